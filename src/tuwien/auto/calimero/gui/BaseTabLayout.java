@@ -36,8 +36,10 @@
 
 package tuwien.auto.calimero.gui;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -50,29 +52,30 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.IntSupplier;
+import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.custom.CTabItem;
-import org.eclipse.swt.dnd.Clipboard;
-import org.eclipse.swt.dnd.TextTransfer;
-import org.eclipse.swt.dnd.Transfer;
 import org.eclipse.swt.events.ControlAdapter;
 import org.eclipse.swt.events.ControlEvent;
 import org.eclipse.swt.events.DisposeEvent;
-import org.eclipse.swt.events.KeyAdapter;
-import org.eclipse.swt.events.KeyEvent;
 import org.eclipse.swt.events.MenuDetectEvent;
 import org.eclipse.swt.events.MenuDetectListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
-import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.FormAttachment;
@@ -84,13 +87,14 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
-import org.eclipse.swt.widgets.List;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.Sash;
+import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
 
 import tuwien.auto.calimero.log.LogService.LogLevel;
 
@@ -116,16 +120,52 @@ class BaseTabLayout
 		public void print(final String s)
 		{
 			if (s != null)
-				logBuffer.forEach((k, v) -> { v.add(s); k.asyncAddLog(); });
+				appendLog(null, null, null, System.currentTimeMillis(), s);
 		}
 	}
 
+	// receives the log records of the SLF4J binding, records are only formatted if some tab accepts their level
+	// and logger name
+	private static final class TabLogSink implements LogProvider.Sink
+	{
+		@Override
+		public boolean isEnabled(final LogLevel level, final String logger)
+		{
+			for (final LogFilter filter : logFilters)
+				if (filter.accepts(level, logger))
+					return true;
+			return false;
+		}
+
+		@Override
+		public void log(final LogLevel level, final String logger, final long timestamp, final String message,
+			final Throwable t)
+		{
+			final String thread = Thread.currentThread().getName();
+			appendLog(null, level, logger, timestamp, "[" + thread + "] " + level + " " + logger + " - " + message);
+			if (t != null) {
+				final StringWriter w = new StringWriter();
+				t.printStackTrace(new PrintWriter(w));
+				for (final String line : w.toString().split("\\R"))
+					appendLog(null, level, logger, timestamp, line);
+			}
+		}
+	}
+
+	// log output of all tabs, every tab reads the log lines it has not shown yet from its log cursor
+	private static final LogRing logRing = new LogRing(16 * 1024);
+	private static final AtomicBoolean logRefreshScheduled = new AtomicBoolean();
+	// log refresh interval in milliseconds
+	private static final int logRefreshInterval = 50;
+	// open tabs, only accessed by the GUI thread
+	private static final Set<BaseTabLayout> tabs = new HashSet<>();
+	// log filters of all open tabs, read by logging threads
+	private static volatile LogFilter[] logFilters = new LogFilter[0];
+
 	static final PrintStream oldSystemErr;
 
 	static {
-		System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
-		System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "trace");
-		System.setProperty("org.slf4j.simpleLogger.showLogName", "true");
+		LogProvider.setSink(new TabLogSink());
 
 		final PrintStream oldSystemOut = System.out;
 		final PrintStream redirector = new StreamRedirector(oldSystemOut);
@@ -135,19 +175,14 @@ class BaseTabLayout
 		System.setErr(new StreamRedirector(oldSystemErr));
 	}
 
-	private static Map<BaseTabLayout, java.util.List<String>> logBuffer = Collections
-			.synchronizedMap(new WeakHashMap<>());
-	private static Map<BaseTabLayout, LogLevel> logLevel = Collections.synchronizedMap(new WeakHashMap<>());
-	private static Map<BaseTabLayout, java.util.List<String>> logIncludeFilters = Collections
-			.synchronizedMap(new WeakHashMap<>());
-	private static Map<BaseTabLayout, java.util.List<String>> logExcludeFilters = Collections
-			.synchronizedMap(new WeakHashMap<>());
+	private long logCursor = logRing.end();
+	private LogFilter logFilter = new LogFilter(LogLevel.INFO);
 
 	final CTabItem tab;
 	final Composite workArea;
 	final Composite top;
 	Table list;
-	final List log;
+	final LogView log;
 
 	int listItemMargin = 2;
 
@@ -158,16 +193,44 @@ class BaseTabLayout
 	private static final long bounce = 50; //ms
 	private long timeLastMenu;
 
-	// filters for list output, column-based
-	final Map<Integer, String> includeFilter = Collections.synchronizedMap(new HashMap<>());
-	final Map<Integer, ArrayList<String>> excludeFilter = Collections.synchronizedMap(new HashMap<>());
+	// filter for the rows of a virtual list, column-based
+	private RowFilter rowFilter = RowFilter.none;
+	// incremented for every filter change, to discard results of outdated filtering
+	private int filterGeneration;
+
+	private Button export;
+	// worker thread of a running export of a virtual list, only accessed by the GUI thread
+	private Thread exporter;
+	private volatile boolean exportCanceled;
+	// number of rows copied from the row store per GUI thread access during export
+	private static final int exportChunkSize = 4096;
+
+	// binary capture of received frames, null if not recording
+	private volatile CaptureWriter capture;
+	private static final int captureFlushInterval = 1000; // [ms]
+	private Button record;
 
 	private String filenamePrefix = "";
 	private String filenameSuffix;
 	private String prevFilename;
 
-	// Type params of array are <String[] String[], Object[]>
-	private final java.util.List<Object[][]> itemBuffer = Collections.synchronizedList(new ArrayList<>());
+	// items are either list rows, or arrays with type params <String[] String[], Object[]>
+	// multiple producers, the GUI thread is the single consumer
+	private final Queue<Object> itemBuffer = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingItems = new AtomicInteger();
+	// backing store of a virtual list, null for lists with regular table items
+	private RowStore rows;
+	// column showing the row position in the filtered view, -1 for none
+	private int filteredCounterColumn = -1;
+	// list refresh interval in milliseconds
+	private volatile int listRefreshInterval = 25;
+	private static final int minListRefreshRate = 30;
+	private static final int maxListRefreshRate = 60;
+	private final AtomicBoolean listRefreshScheduled = new AtomicBoolean();
+	// rows changed after they were added, their list items are updated with the next list refresh
+	private final Queue<ListRow> updatedRows = new ConcurrentLinkedQueue<>();
+	// updated rows are looked up among this many of the newest list items, older items are all refreshed
+	private static final int maxUpdateDistance = 10_000;
 
 	BaseTabLayout(final CTabFolder tf, final String tabTitle, final String info)
 	{
@@ -187,6 +250,11 @@ class BaseTabLayout
 
 		tab.setControl(workArea);
 		tab.addDisposeListener(this::onDispose);
+		tab.addDisposeListener(e -> {
+			tabs.remove(this);
+			updateLogFilters();
+			closeCapture();
+		});
 		tf.setSelection(tab);
 
 		if (info != null) {
@@ -211,13 +279,11 @@ class BaseTabLayout
 		});
 
 		list = newTable(splitted, SWT.BORDER | SWT.FULL_SELECTION | SWT.V_SCROLL, sash);
-		list.addSelectionListener(defaultSelected(e -> {
-			if (e.item.getData("internal") == null)
-				onListItemSelected(e);
-		}));
+		addListSelectionListener();
 		initTableBottom(splitted, sash);
-		log = createLogView(splitted, sash);
-		logBuffer.put(this, Collections.synchronizedList(new ArrayList<>()));
+		log = new LogView(splitted, sash);
+		tabs.add(this);
+		updateLogFilters();
 		workArea.layout();
 	}
 
@@ -236,6 +302,61 @@ class BaseTabLayout
 		return table;
 	}
 
+	private void addListSelectionListener()
+	{
+		list.addSelectionListener(defaultSelected(e -> {
+			if (e.item.getData("internal") == null)
+				onListItemSelected(e);
+		}));
+	}
+
+	/**
+	 * Replaces the main list with a virtual table. List items are no longer created for every added row, but
+	 * populated on demand from a bounded ring buffer of the most recent rows. Intended for lists which receive a
+	 * continuous stream of items; must be called before any list columns are created.
+	 *
+	 * @param capacity maximum number of rows kept, the oldest rows are discarded first
+	 */
+	protected final void enableVirtualList(final int capacity)
+	{
+		enableVirtualList(capacity, -1);
+	}
+
+	/**
+	 * Replaces the main list with a virtual table, see {@link #enableVirtualList(int)}. All rows are kept, a list
+	 * filter only changes the rows shown, and can therefore be applied to rows already added.
+	 *
+	 * @param capacity maximum number of rows kept, the oldest rows are discarded first
+	 * @param filteredCounterColumn index of the column showing the row number among the filtered rows, the column
+	 *        value of added rows is ignored; use -1 for no such column
+	 */
+	protected final void enableVirtualList(final int capacity, final int filteredCounterColumn)
+	{
+		this.filteredCounterColumn = filteredCounterColumn;
+		final Composite parent = list.getParent();
+		final Object layoutData = list.getLayoutData();
+		final int style = list.getStyle();
+		list.dispose();
+		list = new Table(parent, style | SWT.VIRTUAL);
+		list.setLayoutData(layoutData);
+		list.setHeaderVisible(true);
+		list.setFont(Main.font);
+		addListSelectionListener();
+
+		rows = new RowStore(capacity);
+		list.addListener(SWT.SetData, e -> {
+			if (e.index >= rows.size())
+				return;
+			String[] row = rows.texts(e.index);
+			final int column = this.filteredCounterColumn;
+			if (column >= 0 && column < row.length) {
+				row = row.clone();
+				row[column] = Long.toString(rows.firstPosition() + e.index + 1);
+			}
+			((TableItem) e.item).setText(row);
+		});
+	}
+
 	/**
 	 * Override in subtypes.
 	 */
@@ -256,6 +377,9 @@ class BaseTabLayout
 	protected void initTableBottom(final Composite parent, final Sash sash)
 	{}
 
+	/**
+	 * Adds a context menu to filter the rows of a virtual list by column values.
+	 */
 	protected void initFilterMenu()
 	{
 		list.addMenuDetectListener(new MenuDetectListener() {
@@ -285,6 +409,9 @@ class BaseTabLayout
 				mi2.setText("Exclude " + content);
 				mi2.setData("column", c);
 				mi2.setData("pattern", content);
+				new MenuItem(menu, SWT.SEPARATOR);
+				final MenuItem mi3 = new MenuItem(menu, SWT.PUSH);
+				mi3.setText("Filter " + list.getColumn(c).getText() + " ...");
 
 				final SelectionAdapter selection = new SelectionAdapter() {
 					@Override
@@ -293,21 +420,16 @@ class BaseTabLayout
 						final Integer col = (Integer) mi1.getData("column");
 						final String pattern = (String) mi1.getData("pattern");
 						if (e.widget == mi1)
-							includeFilter.put(col, pattern);
-						else if (e.widget == mi2) {
-							ArrayList<String> patterns = excludeFilter.get(col);
-							if (patterns == null) {
-								patterns = new ArrayList<String>();
-								excludeFilter.put(col, patterns);
-							}
-							patterns.add(pattern);
-						}
-						asyncAddLog("add filter on column " + list.getColumn(col).getText()
-								+ " for \"" + pattern + "\"");
+							addListFilter(RowFilter.exact(col, false, pattern));
+						else if (e.widget == mi2)
+							addListFilter(RowFilter.exact(col, true, pattern));
+						else if (e.widget == mi3)
+							showFilterDialog(col, pattern);
 					}
 				};
 				mi1.addSelectionListener(selection);
 				mi2.addSelectionListener(selection);
+				mi3.addSelectionListener(selection);
 
 				final Point pt = new Point(e.x, e.y);
 				menu.setLocation(pt);
@@ -327,19 +449,94 @@ class BaseTabLayout
 		});
 	}
 
-	protected boolean applyFilter(final String[] item)
+	private void showFilterDialog(final int column, final String value)
 	{
-		for (int i = 0; i < item.length; i++) {
-			final String s = item[i];
-			final String include = includeFilter.get(i);
-			if (include != null && !include.equals(s))
-				return true;
+		final Shell shell = new Shell(Main.shell, SWT.DIALOG_TRIM | SWT.APPLICATION_MODAL);
+		shell.setText("Filter " + list.getColumn(column).getText());
+		shell.setLayout(new GridLayout(2, false));
+		final Label syntax = new Label(shell, SWT.NONE);
+		syntax.setText("Show values: exact value, prefix*, /regex/, or address range 1/0/0..1/0/255\n"
+				+ "Prefix with ! to exclude values instead");
+		syntax.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		final Text rule = new Text(shell, SWT.BORDER);
+		rule.setText(value);
+		rule.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		final Button ok = new Button(shell, SWT.PUSH);
+		ok.setText("Apply");
+		shell.setDefaultButton(ok);
+		ok.addSelectionListener(selected(e -> {
+			final String expression = rule.getText();
+			shell.dispose();
+			if (expression.isEmpty())
+				return;
+			try {
+				addListFilter(RowFilter.parse(column, expression));
+			}
+			catch (final IllegalArgumentException iae) {
+				asyncAddLog("invalid filter \"" + expression + "\": " + iae.getMessage());
+			}
+		}));
+		shell.pack();
+		shell.setLocation(Main.shell.getLocation().x + 100, Main.shell.getLocation().y + 100);
+		shell.open();
+	}
+
+	private void addListFilter(final RowFilter.Rule rule)
+	{
+		rowFilter = rowFilter.with(rule);
+		asyncAddLog("add filter on column " + list.getColumn(rule.column).getText() + " for \"" + rule + "\"");
+		applyListFilter();
+	}
 
-			final ArrayList<String> exclude = excludeFilter.get(i);
-			if (exclude != null && exclude.contains(s))
-				return true;
+	/**
+	 * Applies the current list filter to all rows of the virtual list; rows are filtered on a worker thread,
+	 * the list shows the filtered rows once done. This method must be invoked from the GUI thread only.
+	 */
+	private void applyListFilter()
+	{
+		if (rows == null)
+			return;
+		final int generation = ++filterGeneration;
+		final RowFilter filter = rowFilter;
+		final RowStore store = rows;
+		if (filter.isEmpty()) {
+			store.setFilter(filter, new long[0], store.end());
+			showFilteredRows();
+			return;
 		}
-		return false;
+		// rows keep being added while filtering, the worker filters a copy
+		final RowStore.Snapshot snapshot = store.snapshot(filter);
+		final long to = snapshot.end();
+		final Thread t = new Thread(() -> {
+			try {
+				final long start = System.nanoTime();
+				final long[] selected = store.select(filter, snapshot);
+				final long ms = (System.nanoTime() - start) / 1_000_000;
+				Main.asyncExec(() -> {
+					if (generation != filterGeneration || list.isDisposed())
+						return;
+					store.setFilter(filter, selected, to);
+					showFilteredRows();
+					asyncAddLog("filtered " + to + " rows in " + ms + " ms, " + store.size() + " rows shown");
+				});
+			}
+			catch (final RuntimeException e) {
+				asyncAddLog("error filtering list: " + e);
+			}
+		}, "List filter");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	// this method must be invoked from the GUI thread only
+	private void showFilteredRows()
+	{
+		list.setRedraw(false);
+		list.clearAll();
+		list.setItemCount(rows.size());
+		if (rows.size() > 0)
+			list.setTopIndex(rows.size() - 1);
+		list.setRedraw(true);
 	}
 
 	/**
@@ -384,50 +581,65 @@ class BaseTabLayout
 
 	protected final void setLogLevel(final LogLevel level)
 	{
-		logLevel.put(this, level);
+		logFilter = logFilter.withLevel(level);
+		updateLogFilters();
 	}
 
 	protected final void addLogIncludeFilter(final String... regex)
 	{
-		logIncludeFilters.computeIfAbsent(this, k -> new ArrayList<>()).addAll(Arrays.asList(regex));
+		logFilter = logFilter.withInclude(regex);
+		updateLogFilters();
 	}
 
 	protected final void addLogExcludeFilter(final String... regex)
 	{
-		logExcludeFilters.computeIfAbsent(this, k -> new ArrayList<>()).addAll(Arrays.asList(regex));
+		logFilter = logFilter.withExclude(regex);
+		updateLogFilters();
+	}
+
+	// this method must be invoked from the GUI thread only
+	private static void updateLogFilters()
+	{
+		logFilters = tabs.stream().map(tab -> tab.logFilter).toArray(LogFilter[]::new);
+	}
+
+	private static void appendLog(final BaseTabLayout owner, final LogLevel level, final String logger,
+		final long timestamp, final String s)
+	{
+		logRing.append(owner, level, logger, timestamp, s);
+		// a single timed refresh shows the new log lines in all tabs
+		if (logRefreshScheduled.compareAndSet(false, true))
+			Main.asyncExec(() -> Main.display.timerExec(logRefreshInterval, BaseTabLayout::refreshLogs));
+	}
+
+	// this method must be invoked from the GUI thread only
+	private static void refreshLogs()
+	{
+		logRefreshScheduled.set(false);
+		for (final BaseTabLayout tab : tabs.toArray(new BaseTabLayout[0]))
+			tab.addLogs();
 	}
 
 	/**
-	 * Adds a log strings of the log buffer asynchronously to the log list.
+	 * Adds the log strings of the log ring not shown yet to the log list, must be invoked from the GUI thread only.
 	 */
-	private void asyncAddLog()
+	private void addLogs()
 	{
-		Main.asyncExec(() -> {
-			if (log.isDisposed())
-				return;
-			final java.util.List<String> buf = logBuffer.get(this);
-			final LogLevel level = logLevel.computeIfAbsent(this, k -> LogLevel.INFO);
-			final java.util.List<String> include = logIncludeFilters.getOrDefault(this, Collections.emptyList());
-			final java.util.List<String> exclude = logExcludeFilters.getOrDefault(this, Collections.emptyList());
-			if (buf != null) {
-				// we only scroll to show the newest item if the log is completely scrolled down
-				final int items = log.getItemCount();
-				final int first = log.getTopIndex();
-				final Rectangle area = log.getClientArea();
-				final int height = log.getItemHeight();
-				final int visible = (area.height + height - 1) / height;
-				final int last = first + visible;
-				final boolean atEnd = last >= items;
-
-				synchronized (buf) {
-					buf.stream().filter(s -> matches(s, level, include, exclude)).map(BaseTabLayout::expandTabs)
-							.forEach(log::add);
-					buf.clear();
-				}
-				if (log.getItemCount() > items && atEnd)
-					log.setTopIndex(log.getItemCount() - 1);
-			}
+		if (log.isDisposed())
+			return;
+		final LogFilter filter = logFilter;
+		final long cursor = logCursor;
+		final List<String> lines = new ArrayList<>();
+		final int[] read = new int[1];
+		logCursor = logRing.read(cursor, e -> {
+			read[0]++;
+			if (e.owner == this || (e.owner == null && filter.matches(e.level, e.logger, e.text)))
+				lines.add(expandTabs(e.text));
 		});
+		final long skipped = logCursor - cursor - read[0];
+		if (skipped > 0)
+			lines.add("> [" + skipped + " log lines skipped]");
+		log.add(lines);
 	}
 
 	private static String expandTabs(final String s)
@@ -435,44 +647,12 @@ class BaseTabLayout
 		return s.replace("\t", "    ");
 	}
 
-	@SuppressWarnings("fallthrough")
-	private static boolean matches(final String logMessage, final LogLevel level, final java.util.List<String> include,
-		final java.util.List<String> exclude)
-	{
-		if (logMessage.startsWith("> "))
-			return true;
-		boolean match = false;
-		switch (level) {
-		case TRACE:
-			match = true;
-			break;
-		case DEBUG:
-			match |= logMessage.contains(LogLevel.DEBUG.name());
-		case INFO:
-			match |= logMessage.contains(LogLevel.INFO.name());
-		case WARN:
-			match |= logMessage.contains(LogLevel.WARN.name());
-		case ERROR:
-			match |= logMessage.contains(LogLevel.ERROR.name());
-		}
-		if (!match)
-			return false;
-
-		final boolean included = include.isEmpty() || include.stream().anyMatch(logMessage::matches);
-		final boolean excluded = exclude.stream().anyMatch(logMessage::matches);
-		return included && !excluded;
-	}
-
 	/**
 	 * Adds a log string asynchronously to the log list.
 	 */
 	protected final void asyncAddLog(final String s)
 	{
-		final java.util.List<String> buf = logBuffer.get(this);
-		if (buf != null) {
-			buf.add("> " + s);
-			asyncAddLog();
-		}
+		appendLog(this, null, null, System.currentTimeMillis(), "> " + s);
 	}
 
 	/**
@@ -496,19 +676,114 @@ class BaseTabLayout
 	 */
 	protected void asyncAddListItem(final String[] itemText, final String[] keys, final String[] data)
 	{
-		itemBuffer.add(new String[][] { itemText, keys, data });
-		// TODO Runnables might be executed with delay, because SWT enforces a minimum inter-arrival
-		// time. We create a runnable for every new item, and even though addListItems
-		// finished adding all items to the list, remaining runnables that piled up get executed.
-		// Maybe replace with a timed execution every x ms.
-		Main.asyncExec(this::addListItems);
+		addPending(new String[][] { itemText, keys, data });
+	}
+
+	/**
+	 * Adds a row asynchronously to the virtual list; the row text is only formatted once the row is shown.
+	 *
+	 * @param row list row
+	 */
+	protected final void asyncAddListRow(final ListRow row)
+	{
+		if (rows == null)
+			throw new IllegalStateException("list rows require a virtual list");
+		addPending(row);
+	}
+
+	/**
+	 * Updates the list item of a row asynchronously, after the content of a row already added to the virtual list
+	 * changed.
+	 *
+	 * @param row list row
+	 */
+	protected final void asyncUpdateListRow(final ListRow row)
+	{
+		if (rows == null)
+			throw new IllegalStateException("list rows require a virtual list");
+		updatedRows.add(row);
+		scheduleListRefresh();
+	}
+
+	private void addPending(final Object item)
+	{
+		itemBuffer.add(item);
+		pendingItems.incrementAndGet();
+		scheduleListRefresh();
+	}
+
+	private void scheduleListRefresh()
+	{
+		// SWT enforces a minimum inter-arrival time of runnables, so scheduling a runnable for every item lets them
+		// pile up under load. Instead, a single timed refresh adds all items pending at the time it executes.
+		if (listRefreshScheduled.compareAndSet(false, true))
+			Main.asyncExec(() -> Main.display.timerExec(listRefreshInterval, this::refreshList));
+	}
+
+	/**
+	 * Sets the maximum rate the list is refreshed with items added by {@link #asyncAddListItem(String[], String[],
+	 * String[])}, default is 40 Hz.
+	 *
+	 * @param hz refresh rate in Hz, in the range [{@value #minListRefreshRate}..{@value #maxListRefreshRate}]
+	 */
+	protected final void setListRefreshRate(final int hz)
+	{
+		if (hz < minListRefreshRate || hz > maxListRefreshRate)
+			throw new IllegalArgumentException("list refresh rate " + hz + " Hz out of range [" + minListRefreshRate
+					+ ".." + maxListRefreshRate + "]");
+		listRefreshInterval = 1000 / hz;
+	}
+
+	/**
+	 * @return number of list items waiting for the next list refresh
+	 */
+	final int pendingListItems()
+	{
+		return pendingItems.get();
 	}
 
 	// this method must be invoked from the GUI thread only
-	private void addListItems()
+	private void refreshList()
+	{
+		listRefreshScheduled.set(false);
+		updateListRows();
+		addListItems();
+	}
+
+	// this method must be invoked from the GUI thread only
+	private void updateListRows()
 	{
+		if (updatedRows.isEmpty())
+			return;
+		final Set<ListRow> updated = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (ListRow row = updatedRows.poll(); row != null; row = updatedRows.poll()) {
+			updated.add(row);
+			rows.invalidate(row);
+		}
 		if (list.isDisposed())
 			return;
+		// updated rows are usually among the newest rows, only their items are cleared and formatted again
+		final int count = Math.min(rows.size(), list.getItemCount());
+		final int last = Math.max(0, count - maxUpdateDistance);
+		for (int i = count - 1; i >= last && !updated.isEmpty(); i--)
+			if (updated.remove(rows.row(i)))
+				list.clear(i);
+		if (!updated.isEmpty() && last > 0)
+			list.clearAll();
+	}
+
+	// this method must be invoked from the GUI thread only
+	private void addListItems()
+	{
+		// only take the items pending now, items added meanwhile are left for the next refresh
+		final int pending = pendingItems.get();
+		if (pending == 0)
+			return;
+		if (list.isDisposed()) {
+			itemBuffer.clear();
+			pendingItems.set(0);
+			return;
+		}
 
 		// we only scroll to show the newest item if the list is completely scrolled down
 		// hence, check what items are shown currently
@@ -522,9 +797,13 @@ class BaseTabLayout
 		final boolean atEnd = last >= total;
 
 		list.setRedraw(false);
-		int added = 0;
-		while (itemBuffer.size() > 0 && added < 500) {
-			final Object[][] e = itemBuffer.remove(0);
+		if (rows != null) {
+			addVirtualListItems(pending, atEnd);
+			list.setRedraw(true);
+			return;
+		}
+		for (int added = 0; added < pending; added++) {
+			final Object[][] e = (Object[][]) nextListItem();
 			final String[] itemText = (String[]) e[0];
 			final String[] keys = (String[]) e[1];
 			final Object[] data = e[2];
@@ -534,7 +813,6 @@ class BaseTabLayout
 			if (keys != null)
 				for (int i = 0; i < keys.length; i++)
 					item.setData(keys[i], data[i]);
-			added++;
 		}
 
 		if (atEnd)
@@ -542,10 +820,36 @@ class BaseTabLayout
 		list.setRedraw(true);
 	}
 
+	// this method must be invoked from the GUI thread only
+	private void addVirtualListItems(final int pending, final boolean atEnd)
+	{
+		final long first = rows.firstPosition();
+		for (int i = 0; i < pending; i++) {
+			final Object item = nextListItem();
+			rows.add(item instanceof ListRow ? (ListRow) item
+					: new RowStore.TextRow((String[]) ((Object[][]) item)[0]));
+		}
+		// rows overwritten in the ring buffer are removed from the top of the list, items of the remaining rows
+		// move up accordingly and keep their content
+		final int dropped = (int) Math.min(rows.firstPosition() - first, list.getItemCount());
+		if (dropped > 0)
+			list.remove(0, dropped - 1);
+		list.setItemCount(rows.size());
+		if (atEnd && rows.size() > 0)
+			list.setTopIndex(rows.size() - 1);
+	}
+
+	private Object nextListItem()
+	{
+		pendingItems.decrementAndGet();
+		return itemBuffer.poll();
+	}
+
 	// this method must be invoked from the GUI thread only
 	void addListItem(final String[] itemText, final String[] keys, final Object[] data)
 	{
 		itemBuffer.add(new Object[][] { itemText, keys, data });
+		pendingItems.incrementAndGet();
 		addListItems();
 	}
 
@@ -640,22 +944,28 @@ class BaseTabLayout
 				@Override
 				public void widgetSelected(final SelectionEvent e)
 				{
-					includeFilter.clear();
-					excludeFilter.clear();
-					asyncAddLog("reset output filter (all subsequent events will be shown)");
+					rowFilter = RowFilter.none;
+					applyListFilter();
+					asyncAddLog("reset output filter (all events will be shown)");
 				}
 			});
 		}
-		final Button export = new Button(top, SWT.NONE);
+		export = new Button(top, SWT.NONE);
 		export.setFont(Main.font);
 		export.setText("Export data...");
 		export.addSelectionListener(new SelectionAdapter() {
 			@Override
 			public void widgetSelected(final SelectionEvent e)
 			{
+				if (exporter != null) {
+					exportCanceled = true;
+					return;
+				}
 				final FileDialog dlg = new FileDialog(Main.shell, SWT.SAVE);
 				dlg.setText("Export data as CSV");
 				dlg.setOverwrite(true);
+				dlg.setFilterExtensions(new String[] { "*.csv", "*.csv.gz", "*.*" });
+				dlg.setFilterNames(new String[] { "CSV (*.csv)", "Compressed CSV (*.csv.gz)", "All files" });
 
 				// provide a default filename with time stamp, but allow overruling by user
 				final String filename;
@@ -678,21 +988,129 @@ class BaseTabLayout
 		});
 	}
 
+	/**
+	 * Adds a button to record the frames passed to {@link #captureFrame(int, byte[])} to a binary capture file.
+	 *
+	 * @param medium supplies the KNX medium of the captured frames when recording starts
+	 */
+	protected final void addCaptureButton(final IntSupplier medium)
+	{
+		((GridLayout) top.getLayout()).numColumns++;
+		record = new Button(top, SWT.NONE);
+		record.setFont(Main.font);
+		record.setText("Record capture...");
+		record.addSelectionListener(selected(e -> {
+			if (capture != null) {
+				closeCapture();
+				return;
+			}
+			final FileDialog dlg = new FileDialog(Main.shell, SWT.SAVE);
+			dlg.setText("Record frames to capture file");
+			dlg.setOverwrite(true);
+			dlg.setFilterExtensions(new String[] { "*.kcap", "*.*" });
+			final String timestamp = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date());
+			dlg.setFileName(filenamePrefix + timestamp + ".kcap");
+			final String resource = dlg.open();
+			if (resource == null)
+				return;
+			try {
+				final CaptureWriter w = new CaptureWriter(Paths.get(resource), medium.getAsInt());
+				capture = w;
+				Main.display.timerExec(captureFlushInterval, () -> flushCapture(w));
+				record.setText("Stop recording");
+				asyncAddLog("Recording frames to " + resource);
+			}
+			catch (final IOException ioe) {
+				asyncAddLog("Recording frames failed: " + ioe.getMessage());
+			}
+		}));
+	}
+
+	/**
+	 * @return <code>true</code> if frames are recorded to a capture file, <code>false</code> otherwise
+	 */
+	protected final boolean capturing()
+	{
+		return capture != null;
+	}
+
+	/**
+	 * Records a frame if a capture is running, otherwise returns immediately.
+	 *
+	 * @param type frame type, see {@link CaptureWriter}
+	 * @param frame frame bytes
+	 */
+	protected final void captureFrame(final int type, final byte[] frame)
+	{
+		final CaptureWriter w = capture;
+		if (w == null)
+			return;
+		try {
+			w.write(type, CaptureWriter.timestamp(), frame);
+		}
+		catch (final IOException e) {
+			asyncAddLog("Recording frames stopped with error: " + e.getMessage());
+			Main.asyncExec(this::closeCapture);
+		}
+	}
+
+	// writes the frames recorded on an idle bus, this method must be invoked from the GUI thread only
+	private void flushCapture(final CaptureWriter w)
+	{
+		if (capture != w)
+			return;
+		try {
+			w.flushIfDue();
+			Main.display.timerExec(captureFlushInterval, () -> flushCapture(w));
+		}
+		catch (final IOException e) {
+			asyncAddLog("Recording frames stopped with error: " + e.getMessage());
+			closeCapture();
+		}
+	}
+
+	// this method must be invoked from the GUI thread only
+	private void closeCapture()
+	{
+		final CaptureWriter w = capture;
+		if (w == null)
+			return;
+		capture = null;
+		try {
+			w.close();
+			asyncAddLog("Recorded " + w.records() + " frames (" + w.size() + " bytes) to " + w.file());
+		}
+		catch (final IOException e) {
+			asyncAddLog("Closing capture file " + w.file() + ": " + e.getMessage());
+		}
+		if (!record.isDisposed())
+			record.setText("Record capture...");
+	}
+
 	protected void setExportName(final String prefix, final String suffix)
 	{
 		filenamePrefix = prefix;
 		filenameSuffix = suffix;
 	}
 
+	/**
+	 * Exports the list in CSV format; the list of a virtual list is exported from its row store on a worker thread.
+	 *
+	 * @param resource file name, a file name ending with ".gz" is written gzip compressed
+	 */
 	protected void saveAs(final String resource)
 	{
+		if (rows != null) {
+			exportRows(resource);
+			return;
+		}
 		asyncAddLog("Export data in CSV format to " + resource);
 		try {
 			final char comma = ',';
 			final char quote = '\"';
 			final char delim = '\n';
 
-			final Writer w = Files.newBufferedWriter(Paths.get(resource), StandardCharsets.UTF_8);
+			final Writer w = openExport(resource);
 			// write list header
 			w.append(list.getColumn(0).getText());
 			for (int i = 1; i < list.getColumnCount(); i++)
@@ -716,6 +1134,123 @@ class BaseTabLayout
 		}
 	}
 
+	// this method must be invoked from the GUI thread only
+	private void exportRows(final String resource)
+	{
+		final String[] header = Arrays.stream(list.getColumns()).map(TableColumn::getText).toArray(String[]::new);
+		final long from = rows.firstPosition();
+		final long to = from + rows.size();
+		final int generation = filterGeneration;
+		final int counterColumn = filteredCounterColumn;
+		asyncAddLog("Export " + (to - from) + " rows in CSV format to " + resource);
+
+		exportCanceled = false;
+		exporter = new Thread(() -> {
+			final ListRow[] chunk = new ListRow[exportChunkSize];
+			final long[] start = new long[1];
+			final String[] abort = new String[1];
+			long position = from;
+			long exported = 0;
+			int progress = -1;
+			try (Writer w = openExport(resource)) {
+				writeCsvRow(w, header, false, -1, 0);
+				while (position < to && !exportCanceled) {
+					final long next = position;
+					try {
+						Main.syncExec(() -> {
+							if (list.isDisposed())
+								abort[0] = "tab closed";
+							else if (generation != filterGeneration)
+								abort[0] = "list filter changed";
+							else
+								start[0] = rows.copyRows(next, to, chunk);
+						});
+					}
+					catch (final SWTException e) {
+						// the display got disposed while waiting for the GUI thread
+						abort[0] = "application closed";
+					}
+					if (abort[0] != null || Main.display.isDisposed())
+						break;
+					final int n = (int) Math.min(chunk.length, to - start[0]);
+					if (n <= 0)
+						break;
+					for (int i = 0; i < n; i++) {
+						writeCsvRow(w, chunk[i].texts(), true, counterColumn, start[0] + i + 1);
+						chunk[i] = null;
+					}
+					exported += n;
+					position = start[0] + n;
+					final int percent = (int) (100 * (position - from) / (to - from));
+					if (percent != progress) {
+						progress = percent;
+						Main.asyncExec(() -> {
+							if (!export.isDisposed())
+								export.setText("Cancel export (" + percent + " %)");
+						});
+					}
+				}
+				if (exportCanceled)
+					asyncAddLog("Export canceled after " + exported + " rows");
+				else if (abort[0] != null)
+					asyncAddLog("Export aborted after " + exported + " rows: " + abort[0]);
+				else {
+					final long discarded = to - from - exported;
+					asyncAddLog("Export of " + exported + " rows completed successfully"
+							+ (discarded > 0 ? " (" + discarded + " rows discarded meanwhile)" : ""));
+				}
+			}
+			catch (final IOException e) {
+				asyncAddLog("Export aborted with error: " + e.getMessage());
+			}
+			finally {
+				Main.asyncExec(() -> {
+					exporter = null;
+					if (!export.isDisposed())
+						export.setText("Export data...");
+				});
+			}
+		}, "CSV export " + resource);
+		exporter.setDaemon(true);
+		exporter.start();
+	}
+
+	private static void writeCsvRow(final Writer w, final String[] row, final boolean quoted, final int counterColumn,
+		final long counter) throws IOException
+	{
+		final char comma = ',';
+		final char quote = '\"';
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0)
+				w.write(comma);
+			final String s = i == counterColumn ? Long.toString(counter) : row[i] == null ? "" : row[i];
+			if (!quoted) {
+				w.write(s);
+				continue;
+			}
+			w.write(quote);
+			// quotes in a field are escaped by doubling them
+			w.write(s.indexOf(quote) >= 0 ? s.replace("\"", "\"\"") : s);
+			w.write(quote);
+		}
+		w.write('\n');
+	}
+
+	/**
+	 * Opens a buffered writer for exporting data, compressing the output if the file name ends with ".gz".
+	 *
+	 * @param resource file name
+	 * @return the writer
+	 * @throws IOException on error creating the file
+	 */
+	static Writer openExport(final String resource) throws IOException
+	{
+		OutputStream os = Files.newOutputStream(Paths.get(resource));
+		if (resource.endsWith(".gz"))
+			os = new GZIPOutputStream(os, 64 * 1024);
+		return new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 64 * 1024);
+	}
+
 	SelectionListener defaultSelected(final Consumer<SelectionEvent> onSelection)
 	{
 		return new SelectionAdapter() {
@@ -748,37 +1283,6 @@ class BaseTabLayout
 		};
 	}
 
-	private static List createLogView(final Composite parent, final Sash sash)
-	{
-		final List l = new List(parent, SWT.MULTI | SWT.V_SCROLL);
-		l.setBackground(new Color(Main.display, 255, 255, 255));
-		l.setFont(Main.font);
-		final FormData logData = new FormData();
-		logData.top = new FormAttachment(sash);
-		logData.bottom = new FormAttachment(100);
-		logData.left = new FormAttachment(0);
-		logData.right = new FormAttachment(100);
-		l.setLayoutData(logData);
-		l.addKeyListener(new KeyAdapter() {
-			@Override
-			public void keyReleased(final KeyEvent e)
-			{
-				if ((e.stateMask == SWT.COMMAND || e.stateMask == SWT.CTRL) && e.keyCode == 'c') {
-					final String[] selection = ((List) e.widget).getSelection();
-					final String textData = Arrays.asList(selection).stream().collect(Collectors.joining("\n"));
-					if (textData.length() > 0) {
-						final TextTransfer textTransfer = TextTransfer.getInstance();
-						final Clipboard cb = new Clipboard(Main.display);
-						cb.setContents(new Object[] { textData }, new Transfer[] { textTransfer });
-						cb.dispose();
-						e.doit = false;
-					}
-				}
-			}
-		});
-		return l;
-	}
-
 	private void resizeColumns(final int oldWidth, final int newWidth, final int startColumn)
 	{
 		if (oldWidth == newWidth)
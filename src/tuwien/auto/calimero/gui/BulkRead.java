@@ -0,0 +1,221 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.KNXTimeoutException;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.process.ProcessCommunicator;
+
+/**
+ * Reads a list of datapoints with a bounded number of outstanding read requests. Each of <code>window</code> reader
+ * threads issues one group read at a time; the process communicator matches responses to the waiting readers by group
+ * address as they arrive, so requests to different group addresses overlap and the total duration is limited by the
+ * bus instead of the sum of round-trips.
+ * <p>
+ * The process communicator has a single response timeout, which is set to the timeout of the bulk read until it
+ * completes. Other reads using the communicator meanwhile would wait for that timeout as well, so the owner does not
+ * issue other reads while a bulk read runs.
+ */
+final class BulkRead
+{
+	interface Listener
+	{
+		/**
+		 * Invoked from a reader thread after a datapoint was read or failed.
+		 *
+		 * @param done number of datapoints done
+		 * @param total number of datapoints to read
+		 */
+		void progress(int done, int total);
+
+		/**
+		 * Invoked from the last reader thread once all datapoints are done or the bulk read was canceled.
+		 *
+		 * @param read the bulk read
+		 */
+		void completed(BulkRead read);
+	}
+
+	static final int defaultWindow = 8;
+	static final int maxWindow = 32;
+
+	private final ProcessCommunicator pc;
+	private final List<Datapoint> datapoints;
+	private final int window;
+	private final int timeout;
+
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicInteger done = new AtomicInteger();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger responses = new AtomicInteger();
+	private final List<GroupAddress> timeouts = new ArrayList<>();
+	private final List<String> errors = new ArrayList<>();
+	private volatile boolean canceled;
+	private int previousTimeout;
+	private long start;
+	private long end;
+
+	/**
+	 * @param pc process communicator
+	 * @param datapoints datapoints to read, in order
+	 * @param window maximum number of outstanding read requests, <code>1 &le; window &le; maxWindow</code>
+	 * @param timeout response timeout of each read request [s]
+	 */
+	BulkRead(final ProcessCommunicator pc, final List<Datapoint> datapoints, final int window, final int timeout)
+	{
+		if (window < 1 || window > maxWindow)
+			throw new IllegalArgumentException("window " + window + " not in [1, " + maxWindow + "]");
+		this.pc = pc;
+		this.datapoints = datapoints;
+		this.window = window;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Starts the reader threads, and returns immediately.
+	 *
+	 * @param listener notified about progress and completion
+	 */
+	void start(final Listener listener)
+	{
+		start = System.nanoTime();
+		previousTimeout = pc.getResponseTimeout();
+		pc.setResponseTimeout(timeout);
+		final int threads = Math.max(1, Math.min(window, datapoints.size()));
+		running.set(threads);
+		for (int i = 1; i <= threads; i++) {
+			final Thread t = new Thread(() -> readDatapoints(listener), "Bulk read " + i);
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	void cancel()
+	{
+		canceled = true;
+	}
+
+	boolean isCanceled()
+	{
+		return canceled;
+	}
+
+	int total()
+	{
+		return datapoints.size();
+	}
+
+	int done()
+	{
+		return done.get();
+	}
+
+	int responses()
+	{
+		return responses.get();
+	}
+
+	/**
+	 * @return group addresses which did not respond within the timeout, available after completion
+	 */
+	synchronized List<GroupAddress> timeouts()
+	{
+		return new ArrayList<>(timeouts);
+	}
+
+	/**
+	 * @return error messages of failed read requests, available after completion
+	 */
+	synchronized List<String> errors()
+	{
+		return new ArrayList<>(errors);
+	}
+
+	/**
+	 * @return duration of the bulk read in milliseconds, available after completion
+	 */
+	long duration()
+	{
+		return (end - start) / 1_000_000;
+	}
+
+	private void readDatapoints(final Listener listener)
+	{
+		try {
+			for (int i = next.getAndIncrement(); i < datapoints.size() && !canceled; i = next.getAndIncrement()) {
+				read(datapoints.get(i));
+				listener.progress(done.incrementAndGet(), datapoints.size());
+			}
+		}
+		catch (final InterruptedException e) {
+			canceled = true;
+		}
+		finally {
+			if (running.decrementAndGet() == 0) {
+				end = System.nanoTime();
+				pc.setResponseTimeout(previousTimeout);
+				listener.completed(this);
+			}
+		}
+	}
+
+	private void read(final Datapoint dp) throws InterruptedException
+	{
+		try {
+			pc.read(dp);
+			responses.incrementAndGet();
+		}
+		catch (final KNXTimeoutException e) {
+			synchronized (this) {
+				timeouts.add(dp.getMainAddress());
+			}
+		}
+		catch (KNXException | KNXIllegalArgumentException e) {
+			synchronized (this) {
+				errors.add(dp.getMainAddress() + ": " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * Bus statistics of network monitor frames: bus load, repetitions, and acknowledges over a sliding window of one
+ * minute in steps of one second, and the telegrams per source and destination address over a sliding window of one
+ * minute. Counters are primitive arrays indexed by second or 16 bit address and updated without locks, adding a
+ * frame allocates nothing.
+ * <p>
+ * Frames are added by a single thread, the statistics can be read from any thread.
+ */
+final class BusStatistics
+{
+	/** TP1 bit rate [bit/s]. */
+	static final int tp1BitRate = 9600;
+
+	// a TP1 character takes 13 bit times including the pause to the next character; a telegram is preceded by at
+	// least 50 bit times of idle line, an acknowledge by 15 bit times
+	private static final int charBitTimes = 13;
+	private static final int telegramIdle = 50;
+	private static final int ackIdle = 15;
+
+	private static final int window = 60; // [s]
+	private static final long minute = 60_000;
+
+	// metrics counted per second
+	static final int telegrams = 0;
+	static final int bitTimes = 1;
+	static final int repeated = 2;
+	static final int acks = 3;
+	static final int naks = 4;
+	static final int busy = 5;
+	static final int errors = 6;
+	private static final int metrics = 7;
+
+	// cEMI busmonitor error flags: frame, bit, parity error, lost
+	private static final int errorFlags = 0xe8;
+
+	// metrics of the last 60 seconds, bucket i contains the metrics of the second stored in seconds[i]
+	private final AtomicLongArray buckets = new AtomicLongArray(window * metrics);
+	private final AtomicLongArray seconds = new AtomicLongArray(window);
+
+	// telegrams per address of the current and the previous minute, by minute & 1; destination group addresses are
+	// offset by 0x10000
+	private final AtomicIntegerArray[] sources = { new AtomicIntegerArray(0x10000), new AtomicIntegerArray(0x10000) };
+	private final AtomicIntegerArray[] destinations = { new AtomicIntegerArray(0x20000),
+		new AtomicIntegerArray(0x20000) };
+	private volatile long currentMinute;
+
+	private final boolean tp1;
+	private volatile long frames;
+
+	/**
+	 * @param tp1 <code>true</code> if frames are TP1 frames, the bus load is only estimated for TP1
+	 */
+	BusStatistics(final boolean tp1)
+	{
+		this.tp1 = tp1;
+		for (int i = 0; i < window; i++)
+			seconds.set(i, -1);
+	}
+
+	/**
+	 * Adds a frame to the statistics.
+	 *
+	 * @param row decoded frame
+	 * @param now receive time in milliseconds since the epoch
+	 */
+	void add(final MonitorRow row, final long now)
+	{
+		frames++;
+		final long second = now / 1000;
+		final int bucket = (int) (second % window) * metrics;
+		if (seconds.get(bucket / metrics) != second) {
+			for (int i = bucket; i < bucket + metrics; i++)
+				buckets.set(i, 0);
+			seconds.set(bucket / metrics, second);
+		}
+
+		final int status = row.status();
+		if (status > 0 && (status & errorFlags) != 0)
+			buckets.incrementAndGet(bucket + errors);
+		final int length = row.mediumLength();
+		final int ack = row.acknowledge();
+		if (ack >= 0) {
+			buckets.addAndGet(bucket + bitTimes, ackIdle + charBitTimes);
+			buckets.incrementAndGet(bucket + (ack == 0xcc ? acks : ack == 0xc0 ? busy : naks));
+			return;
+		}
+
+		buckets.incrementAndGet(bucket + telegrams);
+		// L-Data frames do not show acknowledges on the medium, we assume one acknowledge per telegram
+		buckets.addAndGet(bucket + bitTimes, telegramIdle + charBitTimes * length
+				+ (status < 0 ? ackIdle + charBitTimes : 0));
+		if (row.isRepetition())
+			buckets.incrementAndGet(bucket + repeated);
+
+		final int src = row.source();
+		final int dst = row.destination();
+		if (src < 0 && dst < 0)
+			return;
+		final long m = now / minute;
+		if (m != currentMinute) {
+			// the array of the new minute still holds the counts of two minutes ago, or older
+			clear(sources[(int) (m & 1)]);
+			clear(destinations[(int) (m & 1)]);
+			if (m != currentMinute + 1) {
+				clear(sources[(int) (~m & 1)]);
+				clear(destinations[(int) (~m & 1)]);
+			}
+			currentMinute = m;
+		}
+		if (src >= 0)
+			sources[(int) (m & 1)].incrementAndGet(src);
+		if (dst >= 0)
+			destinations[(int) (m & 1)].incrementAndGet(dst);
+	}
+
+	/**
+	 * @return number of frames added since creation or the last reset
+	 */
+	long frames()
+	{
+		return frames;
+	}
+
+	boolean isTp1()
+	{
+		return tp1;
+	}
+
+	/**
+	 * Sums a metric over the last completed seconds.
+	 *
+	 * @param metric one of the metric constants
+	 * @param now current time in milliseconds since the epoch
+	 * @param last number of seconds, at most 60
+	 * @return the sum
+	 */
+	long sum(final int metric, final long now, final int last)
+	{
+		final long second = now / 1000;
+		long sum = 0;
+		for (long s = second - Math.min(last, window - 1); s < second; s++) {
+			final int i = (int) (s % window);
+			if (seconds.get(i) == s)
+				sum += buckets.get(i * metrics + metric);
+		}
+		return sum;
+	}
+
+	/**
+	 * @param now current time in milliseconds since the epoch
+	 * @param last number of seconds, at most 60
+	 * @return estimated share of the TP1 bandwidth used in the last completed seconds, in the range [0, 1]
+	 */
+	double load(final long now, final int last)
+	{
+		return Math.min(1, (double) sum(bitTimes, now, last) / Math.min(last, window - 1) / tp1BitRate);
+	}
+
+	/**
+	 * Returns the addresses with the most telegrams within the last minute.
+	 *
+	 * @param byDestination <code>true</code> for destination addresses, <code>false</code> for source addresses
+	 * @param now current time in milliseconds since the epoch
+	 * @param addresses receives up to <code>addresses.length</code> addresses, in descending order of telegrams;
+	 *        destination group addresses are offset by 0x10000
+	 * @param counts receives the estimated telegrams per minute of each address
+	 * @return number of addresses
+	 */
+	int top(final boolean byDestination, final long now, final int[] addresses, final double[] counts)
+	{
+		final AtomicIntegerArray[] counters = byDestination ? destinations : sources;
+		final long m = now / minute;
+		final long current = currentMinute;
+		// weigh the count of the previous minute by its part overlapping the last minute
+		final double previous = 1 - (double) (now % minute) / minute;
+		if (current == m)
+			return top(counters[(int) (m & 1)], counters[(int) (~m & 1)], previous, addresses, counts);
+		// no telegram in this minute yet
+		if (current == m - 1)
+			return top(null, counters[(int) (current & 1)], previous, addresses, counts);
+		return 0;
+	}
+
+	void reset()
+	{
+		for (int i = 0; i < window; i++)
+			seconds.set(i, -1);
+		for (int i = 0; i < 2; i++) {
+			clear(sources[i]);
+			clear(destinations[i]);
+		}
+		frames = 0;
+	}
+
+	/**
+	 * @param address address as returned by {@link #top(boolean, long, int[], double[])}
+	 * @param destination <code>true</code> for a destination address
+	 * @return address string
+	 */
+	static String toString(final int address, final boolean destination)
+	{
+		if (destination && address >= 0x10000)
+			return new GroupAddress(address & 0xffff).toString();
+		return new IndividualAddress(address).toString();
+	}
+
+	// partial selection of the largest counts, keeping the top entries sorted by insertion; cur is null if there
+	// are no counts of the current minute
+	private static int top(final AtomicIntegerArray cur, final AtomicIntegerArray prev, final double previous,
+		final int[] addresses, final double[] counts)
+	{
+		int size = 0;
+		for (int a = 0; a < prev.length(); a++) {
+			final int c = cur != null ? cur.get(a) : 0;
+			final int p = prev.get(a);
+			if (c == 0 && p == 0)
+				continue;
+			final double n = c + p * previous;
+			if (size == addresses.length && n <= counts[size - 1])
+				continue;
+			int i = size < addresses.length ? size++ : size - 1;
+			for (; i > 0 && counts[i - 1] < n; i--) {
+				addresses[i] = addresses[i - 1];
+				counts[i] = counts[i - 1];
+			}
+			addresses[i] = a;
+			counts[i] = n;
+		}
+		return size;
+	}
+
+	private static void clear(final AtomicIntegerArray counters)
+	{
+		for (int i = 0; i < counters.length(); i++)
+			counters.set(i, 0);
+	}
+}
@@ -0,0 +1,184 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.function.LongSupplier;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+/**
+ * Window summarizing the bus statistics of a network monitor: bus load, repetition and acknowledge ratios over the
+ * last second, 10 seconds, and minute, and the top sources and destinations of the last minute. Refreshed once per
+ * second.
+ */
+final class BusStatisticsView
+{
+	private static final int refreshInterval = 1000; // [ms]
+	private static final int topAddresses = 15;
+	private static final int[] periods = { 1, 10, 59 };
+
+	private static final String[] metrics = { "Telegrams/s", "Bus load", "Repeated", "NAK", "Busy", "Frame errors" };
+
+	private final BusStatistics stats;
+	// current time of the statistics in milliseconds since the epoch
+	private final LongSupplier clock;
+	private final Shell shell;
+	private final Table summary;
+	private final Table sources;
+	private final Table destinations;
+
+	private final int[] addresses = new int[topAddresses];
+	private final double[] counts = new double[topAddresses];
+
+	BusStatisticsView(final String title, final BusStatistics stats, final LongSupplier clock)
+	{
+		this.stats = stats;
+		this.clock = clock;
+		shell = new Shell(Main.shell, SWT.DIALOG_TRIM | SWT.RESIZE);
+		shell.setText("Bus statistics - " + title);
+		shell.setLayout(new GridLayout(2, true));
+
+		summary = table(shell, 2, "", "Last second", "Last 10 s", "Last minute");
+		for (final String metric : metrics)
+			new TableItem(summary, SWT.NONE).setText(metric);
+		sources = table(shell, 1, "Top sources", "Telegrams/min");
+		destinations = table(shell, 1, "Top destinations", "Telegrams/min");
+
+		final Composite buttons = new Composite(shell, SWT.NONE);
+		buttons.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, true, false, 2, 1));
+		buttons.setLayout(new GridLayout(2, true));
+		final Button reset = new Button(buttons, SWT.NONE);
+		reset.setText("Reset");
+		reset.setToolTipText("Reset all statistics");
+		reset.addListener(SWT.Selection, e -> {
+			stats.reset();
+			refresh();
+		});
+		final Button close = new Button(buttons, SWT.NONE);
+		close.setText("Close");
+		close.addListener(SWT.Selection, e -> shell.dispose());
+
+		shell.setSize(560, 560);
+		shell.setLocation(Main.shell.getLocation().x + 100, Main.shell.getLocation().y + 100);
+		refresh();
+		shell.open();
+		Main.display.timerExec(refreshInterval, this::scheduledRefresh);
+	}
+
+	void close()
+	{
+		if (!shell.isDisposed())
+			shell.dispose();
+	}
+
+	boolean isDisposed()
+	{
+		return shell.isDisposed();
+	}
+
+	void setActive()
+	{
+		shell.setActive();
+	}
+
+	private static Table table(final Shell parent, final int span, final String... columns)
+	{
+		final Table table = new Table(parent, SWT.BORDER | SWT.FULL_SELECTION);
+		table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, span == 1, span, 1));
+		table.setHeaderVisible(true);
+		table.setLinesVisible(true);
+		table.setFont(Main.font);
+		for (int i = 0; i < columns.length; i++) {
+			final TableColumn c = new TableColumn(table, i == 0 ? SWT.LEFT : SWT.RIGHT);
+			c.setText(columns[i]);
+			c.setWidth(i == 0 ? 130 : 100);
+		}
+		return table;
+	}
+
+	private void scheduledRefresh()
+	{
+		if (shell.isDisposed())
+			return;
+		refresh();
+		Main.display.timerExec(refreshInterval, this::scheduledRefresh);
+	}
+
+	private void refresh()
+	{
+		final long now = clock.getAsLong();
+		for (int p = 0; p < periods.length; p++) {
+			final int s = periods[p];
+			final long telegrams = stats.sum(BusStatistics.telegrams, now, s);
+			final long acks = stats.sum(BusStatistics.acks, now, s);
+			final long naks = stats.sum(BusStatistics.naks, now, s);
+			final long busy = stats.sum(BusStatistics.busy, now, s);
+			final long acknowledges = acks + naks + busy;
+			summary.getItem(0).setText(p + 1, String.format("%.1f", (double) telegrams / s));
+			summary.getItem(1).setText(p + 1, stats.isTp1() ? percent(stats.load(now, s)) : "n/a");
+			summary.getItem(2).setText(p + 1, telegrams > 0
+					? percent((double) stats.sum(BusStatistics.repeated, now, s) / telegrams) : "-");
+			summary.getItem(3).setText(p + 1, acknowledges > 0 ? percent((double) naks / acknowledges) : "-");
+			summary.getItem(4).setText(p + 1, acknowledges > 0 ? percent((double) busy / acknowledges) : "-");
+			summary.getItem(5).setText(p + 1, Long.toString(stats.sum(BusStatistics.errors, now, s)));
+		}
+		fill(sources, stats.top(false, now, addresses, counts), false);
+		fill(destinations, stats.top(true, now, addresses, counts), true);
+	}
+
+	private void fill(final Table table, final int size, final boolean destination)
+	{
+		table.setItemCount(size);
+		for (int i = 0; i < size; i++)
+			table.getItem(i).setText(new String[] { BusStatistics.toString(addresses[i], destination),
+				String.format("%.1f", counts[i]) });
+	}
+
+	private static String percent(final double ratio)
+	{
+		return String.format("%.1f %%", 100 * ratio);
+	}
+}
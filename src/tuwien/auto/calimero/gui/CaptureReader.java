@@ -0,0 +1,162 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader of binary capture files written by {@link CaptureWriter}.
+ */
+final class CaptureReader implements AutoCloseable
+{
+	/**
+	 * Frame record of a capture, reused by the reader for subsequent records.
+	 */
+	static final class Record
+	{
+		int type;
+		// ns since the epoch
+		long timestamp;
+		byte[] frame;
+	}
+
+	private static final int bufferSize = 256 * 1024;
+
+	private final Path file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+	private final int medium;
+	private final long startTime;
+	private boolean eof;
+
+	/**
+	 * Opens a capture file and reads its header.
+	 *
+	 * @param file capture file
+	 * @throws IOException on error reading the file, or if the file is not a capture of a supported version
+	 */
+	CaptureReader(final Path file) throws IOException
+	{
+		this.file = file;
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			buffer.flip();
+			if (!fill(CaptureWriter.headerSize))
+				throw new IOException(file + " is not a capture file");
+			if (buffer.getInt() != CaptureWriter.magic)
+				throw new IOException(file + " is not a capture file");
+			final int version = buffer.getShort() & 0xffff;
+			if (version != CaptureWriter.version)
+				throw new IOException("unsupported capture file version " + version);
+			medium = buffer.getShort() & 0xffff;
+			startTime = buffer.getLong();
+		}
+		catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	Path file()
+	{
+		return file;
+	}
+
+	/**
+	 * @return KNX medium of the captured frames
+	 */
+	int medium()
+	{
+		return medium;
+	}
+
+	/**
+	 * @return start of the capture in milliseconds since the epoch
+	 */
+	long startTime()
+	{
+		return startTime;
+	}
+
+	/**
+	 * Reads the next frame record.
+	 *
+	 * @param r record to fill in
+	 * @return <code>true</code> if a record was read, <code>false</code> at the end of the capture; an incomplete
+	 *         record at the end of the capture (e.g., recording was aborted) also ends the capture
+	 * @throws IOException on error reading the capture file
+	 */
+	boolean next(final Record r) throws IOException
+	{
+		if (!fill(CaptureWriter.recordHeaderSize))
+			return false;
+		final int length = buffer.getShort(buffer.position()) & 0xffff;
+		if (!fill(CaptureWriter.recordHeaderSize + length))
+			return false;
+		buffer.getShort();
+		r.type = buffer.get() & 0xff;
+		buffer.get();
+		r.timestamp = buffer.getLong();
+		r.frame = new byte[length];
+		buffer.get(r.frame);
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	// ensures the buffer contains at least the requested bytes, returns false if the file ends before
+	private boolean fill(final int bytes) throws IOException
+	{
+		while (buffer.remaining() < bytes) {
+			if (eof)
+				return false;
+			buffer.compact();
+			eof = channel.read(buffer) == -1;
+			buffer.flip();
+		}
+		return true;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Replays the frame records of a capture file, keeping the time between records scaled by a speed factor.
+ */
+final class CaptureReplay
+{
+	// replay as fast as possible
+	static final double maxSpeed = 0;
+
+	private final CaptureReader reader;
+	private final Consumer<CaptureReader.Record> consumer;
+	private volatile double speed;
+	private volatile boolean quit;
+	private volatile boolean speedChanged;
+	private long replayed;
+
+	// replay clock, a capture time and the corresponding wall clock time, and the speed factor since then; guarded by
+	// this, written by the replay thread only
+	private long refTimestamp;
+	private long refNanos;
+	private double factor = maxSpeed;
+	private long lastTimestamp;
+	private boolean done;
+
+	/**
+	 * @param reader capture to replay, closed once the replay is done
+	 * @param speed replay speed factor, e.g., 1.0 for real time, or {@link #maxSpeed}
+	 * @param consumer receives the replayed records, invoked from the replay thread
+	 */
+	CaptureReplay(final CaptureReader reader, final double speed, final Consumer<CaptureReader.Record> consumer)
+	{
+		this.reader = reader;
+		this.consumer = consumer;
+		lastTimestamp = reader.startTime() * 1_000_000L;
+		setSpeed(speed);
+	}
+
+	void setSpeed(final double speed)
+	{
+		if (speed < 0)
+			throw new IllegalArgumentException("replay speed " + speed + " < 0");
+		this.speed = speed;
+		speedChanged = true;
+	}
+
+	void quit()
+	{
+		quit = true;
+	}
+
+	/**
+	 * @return number of records replayed so far
+	 */
+	synchronized long replayed()
+	{
+		return replayed;
+	}
+
+	/**
+	 * Returns the replay clock, the capture time corresponding to the current wall clock time. At maximum speed and
+	 * once the replay is done, the clock stays at the time of the last replayed record.
+	 *
+	 * @return capture time in nanoseconds since the epoch, the capture start time before the first record
+	 */
+	long position()
+	{
+		return position(System.nanoTime());
+	}
+
+	/**
+	 * Replays the capture.
+	 *
+	 * @throws IOException on error reading the capture
+	 */
+	void replay() throws IOException
+	{
+		final CaptureReader.Record r = new CaptureReader.Record();
+		boolean first = true;
+		try {
+			while (!quit && reader.next(r)) {
+				if (first) {
+					first = false;
+					speedChanged = false;
+					anchor(r.timestamp, System.nanoTime(), speed);
+				}
+				while (!quit) {
+					if (speedChanged) {
+						// continue from the capture time reached so far, using the new speed from now on
+						speedChanged = false;
+						final long now = System.nanoTime();
+						anchor(Math.min(position(now), r.timestamp), now, speed);
+					}
+					if (factor == maxSpeed)
+						break;
+					final long wait = refNanos + (long) ((r.timestamp - refTimestamp) / factor) - System.nanoTime();
+					if (wait <= 0)
+						break;
+					LockSupport.parkNanos(Math.min(wait, 100_000_000L));
+				}
+				if (quit)
+					break;
+				consumer.accept(r);
+				replayed(r.timestamp);
+			}
+		}
+		finally {
+			synchronized (this) {
+				done = true;
+			}
+			reader.close();
+		}
+	}
+
+	private synchronized long position(final long nanos)
+	{
+		if (factor == maxSpeed || done)
+			return lastTimestamp;
+		return Math.max(lastTimestamp, refTimestamp + (long) ((nanos - refNanos) * factor));
+	}
+
+	private synchronized void anchor(final long timestamp, final long nanos, final double factor)
+	{
+		refTimestamp = timestamp;
+		refNanos = nanos;
+		this.factor = factor;
+	}
+
+	private synchronized void replayed(final long timestamp)
+	{
+		lastTimestamp = timestamp;
+		replayed++;
+	}
+}
@@ -0,0 +1,181 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only writer of binary capture files. A capture file starts with a header, followed by length-prefixed
+ * frame records:
+ *
+ * <pre>
+ * header: magic "KCAP" (4) | version (2) | KNX medium (2) | start time in ms since the epoch (8)
+ * record: frame length (2) | frame type (1) | reserved (1) | timestamp in ns since the epoch (8) | frame
+ * </pre>
+ *
+ * All values are big endian. Records are collected in a direct buffer, which is written to the file channel once
+ * full, or when writing a record at least a second after the last write; writing a frame does not allocate. Owners
+ * call {@link #flushIfDue()} from a timer, so records of an idle bus are written as well.
+ */
+final class CaptureWriter implements AutoCloseable
+{
+	static final int magic = 0x4B434150; // "KCAP"
+	static final int version = 1;
+	static final int headerSize = 16;
+	static final int recordHeaderSize = 12;
+
+	// frame types
+	static final int cemiFrame = 1;
+
+	private static final int bufferSize = 256 * 1024;
+	private static final long flushInterval = 1_000_000_000L; // ns
+
+	// base for nanosecond timestamps: the system clock only provides ms resolution
+	private static final long epochNanosBase = System.currentTimeMillis() * 1_000_000L;
+	private static final long nanoTimeBase = System.nanoTime();
+
+	private final Path file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+	private long lastFlush = System.nanoTime();
+	private long records;
+	private long bytes;
+
+	/**
+	 * Creates a new capture file, an existing file is overwritten.
+	 *
+	 * @param file capture file
+	 * @param medium KNX medium of the captured frames, see KNXMediumSettings
+	 * @throws IOException on error creating the file
+	 */
+	CaptureWriter(final Path file, final int medium) throws IOException
+	{
+		this.file = file;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.putInt(magic).putShort((short) version).putShort((short) medium).putLong(System.currentTimeMillis());
+		bytes = headerSize;
+	}
+
+	/**
+	 * @return current time in nanoseconds since the epoch, with nanosecond resolution
+	 */
+	static long timestamp()
+	{
+		return epochNanosBase + System.nanoTime() - nanoTimeBase;
+	}
+
+	/**
+	 * Appends a frame record.
+	 *
+	 * @param type frame type
+	 * @param timestamp time the frame was received, in nanoseconds since the epoch
+	 * @param frame frame bytes
+	 * @throws IOException on error writing to the capture file
+	 */
+	synchronized void write(final int type, final long timestamp, final byte[] frame) throws IOException
+	{
+		if (frame.length > 0xffff)
+			throw new IllegalArgumentException("frame length " + frame.length + " exceeds capture record size");
+		if (buffer.remaining() < recordHeaderSize + frame.length)
+			flush();
+		buffer.putShort((short) frame.length).put((byte) type).put((byte) 0).putLong(timestamp).put(frame);
+		records++;
+		bytes += recordHeaderSize + frame.length;
+		if (System.nanoTime() - lastFlush > flushInterval)
+			flush();
+	}
+
+	/**
+	 * Writes the buffered records to the file if the last write is at least a second ago.
+	 *
+	 * @throws IOException on error writing to the capture file
+	 */
+	synchronized void flushIfDue() throws IOException
+	{
+		if (channel.isOpen() && buffer.position() > 0 && System.nanoTime() - lastFlush > flushInterval)
+			flush();
+	}
+
+	synchronized void flush() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+		lastFlush = System.nanoTime();
+	}
+
+	Path file()
+	{
+		return file;
+	}
+
+	/**
+	 * @return number of frame records written
+	 */
+	synchronized long records()
+	{
+		return records;
+	}
+
+	/**
+	 * @return size of the capture in bytes
+	 */
+	synchronized long size()
+	{
+		return bytes;
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (!channel.isOpen())
+			return;
+		try {
+			flush();
+		}
+		finally {
+			channel.close();
+		}
+	}
+}
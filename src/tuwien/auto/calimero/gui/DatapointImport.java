@@ -0,0 +1,211 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.datapoint.DatapointMap;
+import tuwien.auto.calimero.xml.KNXMLException;
+import tuwien.auto.calimero.xml.XmlInputFactory;
+import tuwien.auto.calimero.xml.XmlReader;
+
+/**
+ * Imports datapoints from a calimero datapoint file or an ETS project archive, see {@link KnxProject}, streaming one
+ * datapoint at a time into a datapoint model and a {@link DatapointIndex}. Import progress is derived from the number
+ * of bytes read. An import runs once, and can be canceled from any thread.
+ */
+final class DatapointImport
+{
+	interface Progress
+	{
+		/**
+		 * @param percent bytes read in percent of the file size
+		 * @param datapoints number of datapoints imported so far
+		 */
+		void update(int percent, int datapoints);
+	}
+
+	// datapoints imported between progress updates
+	private static final int progressInterval = 500;
+
+	private final Path file;
+	private final DatapointMap<Datapoint> model = new DatapointMap<>();
+	private final DatapointIndex.Builder index = new DatapointIndex.Builder();
+	private int duplicates;
+	private volatile boolean canceled;
+
+	private long size;
+	private long read;
+
+	DatapointImport(final Path file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * Runs the import in the calling thread.
+	 *
+	 * @param progress receives progress updates
+	 * @return the index of the imported datapoints, or <code>null</code> if the import was canceled
+	 * @throws IOException on error reading the file
+	 * @throws KNXMLException on malformed datapoint file
+	 */
+	DatapointIndex run(final Progress progress) throws IOException
+	{
+		if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(KnxProject.extension))
+			loadProject(progress);
+		else {
+			size = Files.size(file);
+			try (final InputStream is = new CountingInputStream(Files.newInputStream(file));
+				 final XmlReader r = XmlInputFactory.newInstance().createXMLStreamReader(is)) {
+				loadDatapoints(r, progress);
+			}
+		}
+		progress.update(100, index.size());
+		return canceled ? null : index.build();
+	}
+
+	void cancel()
+	{
+		canceled = true;
+	}
+
+	boolean isCanceled()
+	{
+		return canceled;
+	}
+
+	/**
+	 * @return the imported datapoints
+	 */
+	DatapointMap<Datapoint> model()
+	{
+		return model;
+	}
+
+	/**
+	 * @return number of skipped datapoints, whose group address was used by a datapoint imported before
+	 */
+	int duplicates()
+	{
+		return duplicates;
+	}
+
+	Path file()
+	{
+		return file;
+	}
+
+	// same structure as DatapointMap.load, but handling one datapoint at a time
+	private void loadDatapoints(final XmlReader r, final Progress progress)
+	{
+		if (r.getEventType() != XmlReader.START_ELEMENT)
+			r.nextTag();
+		if (r.getEventType() != XmlReader.START_ELEMENT || !"datapoints".equals(r.getLocalName()))
+			throw new KNXMLException("datapoints element not found", r);
+		while (r.nextTag() == XmlReader.START_ELEMENT && !canceled) {
+			add(Datapoint.create(r), progress);
+		}
+	}
+
+	private void loadProject(final Progress progress) throws IOException
+	{
+		try (final ZipFile zip = new ZipFile(file.toFile())) {
+			final List<ZipEntry> installations = KnxProject.installations(zip);
+			for (final ZipEntry entry : installations)
+				size += Math.max(0, entry.getSize());
+			for (final ZipEntry entry : installations) {
+				try (final InputStream is = new CountingInputStream(zip.getInputStream(entry))) {
+					KnxProject.read(is, dp -> add(dp, progress), this::isCanceled);
+				}
+			}
+		}
+	}
+
+	private void add(final Datapoint dp, final Progress progress)
+	{
+		if (model.contains(dp.getMainAddress())) {
+			duplicates++;
+			return;
+		}
+		model.add(dp);
+		index.add(dp);
+		if (index.size() % progressInterval == 0)
+			progress.update(percent(), index.size());
+	}
+
+	private int percent()
+	{
+		return size == 0 ? 100 : (int) Math.min(100, 100 * read / size);
+	}
+
+	private final class CountingInputStream extends FilterInputStream
+	{
+		CountingInputStream(final InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			final int b = super.read();
+			if (b >= 0)
+				read++;
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException
+		{
+			final int n = super.read(b, off, len);
+			if (n > 0)
+				read += n;
+			return n;
+		}
+	}
+}
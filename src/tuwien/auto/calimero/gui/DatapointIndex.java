@@ -0,0 +1,216 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.datapoint.Datapoint;
+
+/**
+ * Compact index of datapoints sorted by group address, keeping group address, name, and search text of each
+ * datapoint in parallel arrays. Supports lookup by address and prefix/substring search. This class is not thread-safe.
+ */
+final class DatapointIndex
+{
+	private int[] addresses;
+	private String[] names;
+	// lower case search text of group address, name, and DPT
+	private String[] keys;
+	private int size;
+
+	DatapointIndex()
+	{
+		this(16);
+	}
+
+	private DatapointIndex(final int capacity)
+	{
+		addresses = new int[capacity];
+		names = new String[capacity];
+		keys = new String[capacity];
+	}
+
+	/**
+	 * Collects datapoints in any order, for building an index in one go.
+	 */
+	static final class Builder
+	{
+		private final DatapointIndex unsorted = new DatapointIndex(1024);
+
+		void add(final Datapoint dp)
+		{
+			unsorted.append(dp);
+		}
+
+		int size()
+		{
+			return unsorted.size;
+		}
+
+		DatapointIndex build()
+		{
+			final int n = unsorted.size;
+			final long[] order = new long[n];
+			for (int i = 0; i < n; i++)
+				order[i] = (long) unsorted.addresses[i] << 32 | i;
+			Arrays.sort(order);
+			final DatapointIndex index = new DatapointIndex(Math.max(16, n));
+			for (final long o : order) {
+				final int i = (int) o;
+				index.set(index.size++, unsorted.addresses[i], unsorted.names[i], unsorted.keys[i]);
+			}
+			return index;
+		}
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds a datapoint, or replaces the datapoint with the same group address.
+	 *
+	 * @param dp datapoint
+	 */
+	void add(final Datapoint dp)
+	{
+		final int address = dp.getMainAddress().getRawAddress();
+		int i = Arrays.binarySearch(addresses, 0, size, address);
+		if (i < 0) {
+			i = -i - 1;
+			grow();
+			System.arraycopy(addresses, i, addresses, i + 1, size - i);
+			System.arraycopy(names, i, names, i + 1, size - i);
+			System.arraycopy(keys, i, keys, i + 1, size - i);
+			size++;
+		}
+		set(i, address, dp.getName(), key(dp));
+	}
+
+	/**
+	 * @param index index, <code>0 &le; index &lt; size()</code>
+	 * @return raw group address of the datapoint
+	 */
+	int address(final int index)
+	{
+		return addresses[index];
+	}
+
+	/**
+	 * @param index index, <code>0 &le; index &lt; size()</code>
+	 * @return the picker label of the datapoint, containing group address and name separated by a tab
+	 */
+	String label(final int index)
+	{
+		return new GroupAddress(addresses[index]) + "\t" + names[index];
+	}
+
+	/**
+	 * Searches datapoints, in order of group address. A datapoint matches if its group address starts with the
+	 * query, or if its name or datapoint type contains the query (ignoring case).
+	 *
+	 * @param query search text, an empty query matches all datapoints
+	 * @param max maximum number of returned matches
+	 * @return indices of matching datapoints
+	 */
+	int[] search(final String query, final int max)
+	{
+		final String q = query.trim().toLowerCase(Locale.ROOT);
+		int[] found = new int[Math.min(max, 64)];
+		int n = 0;
+		for (int i = 0; i < size && n < max; i++) {
+			final String k = keys[i];
+			if (q.isEmpty() || k.startsWith(q) || k.indexOf(q, k.indexOf(' ') + 1) >= 0) {
+				if (n == found.length)
+					found = Arrays.copyOf(found, Math.min(max, 2 * n));
+				found[n++] = i;
+			}
+		}
+		return Arrays.copyOf(found, n);
+	}
+
+	/**
+	 * @param query search text, see {@link #search(String, int)}
+	 * @return number of matching datapoints
+	 */
+	int count(final String query)
+	{
+		final String q = query.trim().toLowerCase(Locale.ROOT);
+		if (q.isEmpty())
+			return size;
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			final String k = keys[i];
+			if (k.startsWith(q) || k.indexOf(q, k.indexOf(' ') + 1) >= 0)
+				n++;
+		}
+		return n;
+	}
+
+	private void append(final Datapoint dp)
+	{
+		grow();
+		set(size++, dp.getMainAddress().getRawAddress(), dp.getName(), key(dp));
+	}
+
+	private void set(final int i, final int address, final String name, final String key)
+	{
+		addresses[i] = address;
+		names[i] = name;
+		keys[i] = key;
+	}
+
+	private void grow()
+	{
+		if (size < addresses.length)
+			return;
+		final int capacity = 2 * addresses.length;
+		addresses = Arrays.copyOf(addresses, capacity);
+		names = Arrays.copyOf(names, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+	}
+
+	private static String key(final Datapoint dp)
+	{
+		final String dpt = dp.getDPT() == null ? "" : dp.getDPT();
+		return (dp.getMainAddress() + " " + dp.getName() + " " + dpt).toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,156 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.dptxlator.DPTXlator;
+import tuwien.auto.calimero.dptxlator.TranslatorTypes;
+
+/**
+ * Reusable translator of a datapoint type, created once per datapoint instead of once per translated value.
+ * Translating is thread-safe.
+ */
+final class DptTranslator
+{
+	/**
+	 * Translators of datapoints by group address. A translator is replaced if the type of its datapoint changes.
+	 */
+	static final class Cache
+	{
+		private final AtomicReferenceArray<DptTranslator> translators = new AtomicReferenceArray<>(0x10000);
+
+		/**
+		 * @param dp datapoint, or <code>null</code>
+		 * @return translator for the type of <code>dp</code>, or <code>null</code> if no datapoint or type is set
+		 */
+		DptTranslator get(final Datapoint dp)
+		{
+			if (dp == null || dp.getDPT() == null)
+				return null;
+			final int address = dp.getMainAddress().getRawAddress();
+			DptTranslator t = translators.get(address);
+			if (t == null || !t.isFor(dp)) {
+				t = new DptTranslator(dp.getMainNumber(), dp.getDPT());
+				translators.set(address, t);
+			}
+			return t;
+		}
+	}
+
+	private final int mainNumber;
+	private final String dpt;
+	private final DPTXlator xlator;
+	// set if no translator is available for the type
+	private final String error;
+
+	DptTranslator(final int mainNumber, final String dpt)
+	{
+		this.mainNumber = mainNumber;
+		this.dpt = dpt;
+		DPTXlator t = null;
+		String error = null;
+		try {
+			t = TranslatorTypes.createTranslator(mainNumber, dpt);
+		}
+		catch (KNXException | KNXIllegalArgumentException e) {
+			error = "error: " + e.getMessage();
+		}
+		xlator = t;
+		this.error = error;
+	}
+
+	/**
+	 * Translates a value of this datapoint type to its string representation.
+	 *
+	 * @param asdu ASDU containing the value
+	 * @return the translated value, or an error description
+	 */
+	String value(final byte[] asdu)
+	{
+		if (xlator == null)
+			return error;
+		synchronized (xlator) {
+			try {
+				xlator.setData(asdu);
+				return xlator.getValue();
+			}
+			catch (final KNXIllegalArgumentException e) {
+				return "error: " + e.getMessage();
+			}
+		}
+	}
+
+	/**
+	 * Translates a value of this datapoint type to a number, for datapoint types with a numeric representation.
+	 *
+	 * @param asdu ASDU containing the value
+	 * @return the numeric value, or {@link Double#NaN} if the value is not numeric or not valid for the type
+	 */
+	double numeric(final byte[] asdu)
+	{
+		if (xlator == null)
+			return Double.NaN;
+		synchronized (xlator) {
+			try {
+				xlator.setData(asdu);
+				return xlator.getNumericValue();
+			}
+			catch (KNXFormatException | KNXIllegalArgumentException e) {
+				return Double.NaN;
+			}
+		}
+	}
+
+	/**
+	 * @return unit of the datapoint type, or an empty string if no translator is available
+	 */
+	String unit()
+	{
+		return xlator != null ? xlator.getType().getUnit() : "";
+	}
+
+	private boolean isFor(final Datapoint dp)
+	{
+		return mainNumber == dp.getMainNumber() && dpt.equals(dp.getDPT());
+	}
+}
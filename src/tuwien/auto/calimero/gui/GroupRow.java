@@ -0,0 +1,203 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.process.ProcessEvent;
+
+/**
+ * Group monitor list row, keeping the received group event as raw addresses, service code, ASDU, and receive time.
+ * Column text, including the ASDU translated using the datapoint type, is only formatted when requested.
+ * <p>
+ * Columns: counter, filtered counter (empty), time, source, destination, service, ASDU, decoded ASDU, repeats.
+ * Repeats of the event are counted in the row, see {@link RepeatFilter}.
+ */
+final class GroupRow implements ListRow
+{
+	private static final int columns = 9;
+
+	private static final DateTimeFormatter time = DateTimeFormatter.ofPattern("HH:mm:ss")
+			.withZone(ZoneId.systemDefault());
+
+	private final long counter;
+	// receive time in milliseconds since the epoch
+	private final long timestamp;
+	private final int src;
+	private final int dst;
+	private final int service;
+	private final byte[] asdu;
+	// translator of the datapoint type at the time the event was received, null if unknown
+	private final DptTranslator translator;
+	// updated by the event thread only
+	private volatile int repeats = 1;
+	private volatile long lastRepeat;
+
+	/**
+	 * Creates a row of a group event.
+	 *
+	 * @param counter event counter
+	 * @param timestamp receive time in milliseconds since the epoch
+	 * @param e the group event
+	 * @param translator translator of the destination datapoint, or <code>null</code>
+	 */
+	GroupRow(final long counter, final long timestamp, final ProcessEvent e, final DptTranslator translator)
+	{
+		this.counter = counter;
+		this.timestamp = timestamp;
+		src = e.getSourceAddr().getRawAddress();
+		dst = e.getDestination().getRawAddress();
+		service = e.getServiceCode();
+		asdu = e.getASDU();
+		this.translator = translator;
+	}
+
+	/**
+	 * @return the ASDU of the event, the returned array must not be modified
+	 */
+	byte[] asdu()
+	{
+		return asdu;
+	}
+
+	/**
+	 * @return <code>true</code> if <code>row</code> is the same telegram as this row, i.e., has equal source,
+	 *         destination, service, and ASDU
+	 */
+	boolean sameTelegram(final GroupRow row)
+	{
+		return src == row.src && dst == row.dst && service == row.service && Arrays.equals(asdu, row.asdu);
+	}
+
+	/**
+	 * @return hash of source, destination, service, and ASDU, see {@link #sameTelegram(GroupRow)}
+	 */
+	long telegramHash()
+	{
+		return ((long) src << 32 | (long) dst << 16 | service) * 31 + Arrays.hashCode(asdu);
+	}
+
+	long timestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Counts a repeat of the telegram of this row.
+	 *
+	 * @param time receive time of the repeat in milliseconds since the epoch
+	 */
+	void repeated(final long time)
+	{
+		repeats++;
+		lastRepeat = time;
+	}
+
+	@Override
+	public int columns()
+	{
+		return columns;
+	}
+
+	@Override
+	public String text(final int column)
+	{
+		switch (column) {
+		case 0:
+			return Long.toString(counter);
+		case 2:
+			return time.format(Instant.ofEpochMilli(timestamp));
+		case 3:
+			return new IndividualAddress(src).toString();
+		case 4:
+			return new GroupAddress(dst).toString();
+		case 5:
+			return service == 0x00 ? "read request" : service == 0x40 ? "read response" : "write";
+		case 6:
+			return DataUnitBuilder.toHex(asdu, " ");
+		case 7:
+			return value();
+		case 8:
+			final int n = repeats;
+			return n > 1 ? n + " (last " + time.format(Instant.ofEpochMilli(lastRepeat)) + ")" : "";
+		default:
+			return "";
+		}
+	}
+
+	@Override
+	public long key(final int column)
+	{
+		switch (column) {
+		case 1:
+			return 0;
+		case 3:
+			return src;
+		case 4:
+			return dst;
+		case 5:
+			return service == 0x00 || service == 0x40 ? service : 0x80;
+		case 6:
+			// short ASDUs are their own key
+			if (asdu.length < 8) {
+				long key = asdu.length;
+				for (final byte b : asdu)
+					key = key << 8 | (b & 0xff);
+				return key;
+			}
+			return noIndex;
+		default:
+			return noIndex;
+		}
+	}
+
+	private String value()
+	{
+		if (asdu.length == 0)
+			return "[empty]";
+		if (translator == null)
+			return "n/a";
+		return translator.value(asdu);
+	}
+}
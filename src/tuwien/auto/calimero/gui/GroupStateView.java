@@ -0,0 +1,160 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+/**
+ * Window showing the current state of group addresses. The table is virtual and refreshed once per second, only the
+ * visible rows are formatted; clicking a column header sorts by that column.
+ */
+final class GroupStateView
+{
+	private static final int refreshInterval = 1000; // [ms]
+
+	private static final String[] columnNames = { "Group address", "Name", "Last value", "Last source", "Updates",
+		"Updates/min", "Age" };
+	private static final int[] columnWidths = { 90, 160, 140, 90, 70, 80, 90 };
+
+	private final GroupStates states;
+	private final Shell shell;
+	private final Table table;
+
+	private int sortColumn;
+	private boolean ascending = true;
+	// raw group addresses in table order
+	private int[] order = new int[0];
+	private long now;
+
+	GroupStateView(final String title, final GroupStates states)
+	{
+		this.states = states;
+		shell = new Shell(Main.shell, SWT.DIALOG_TRIM | SWT.RESIZE);
+		shell.setText("Group states - " + title);
+		shell.setLayout(new GridLayout(2, false));
+
+		table = new Table(shell, SWT.BORDER | SWT.VIRTUAL | SWT.FULL_SELECTION | SWT.MULTI);
+		table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 2, 1));
+		table.setHeaderVisible(true);
+		table.setLinesVisible(true);
+		table.setFont(Main.font);
+		for (int i = 0; i < columnNames.length; i++) {
+			final TableColumn c = new TableColumn(table, i == 4 || i == 5 ? SWT.RIGHT : SWT.LEFT);
+			c.setText(columnNames[i]);
+			c.setWidth(columnWidths[i]);
+			final int column = i;
+			c.addListener(SWT.Selection, e -> sortBy(column));
+		}
+		table.setSortColumn(table.getColumn(0));
+		table.setSortDirection(SWT.UP);
+		table.addListener(SWT.SetData, e -> {
+			if (e.index >= order.length)
+				return;
+			final String[] texts = states.texts(order[e.index], now);
+			if (texts != null)
+				((TableItem) e.item).setText(texts);
+		});
+
+		final Button reset = new Button(shell, SWT.NONE);
+		reset.setText("Reset");
+		reset.setToolTipText("Remove all group address states");
+		reset.addListener(SWT.Selection, e -> {
+			states.clear();
+			refresh();
+		});
+		final Button close = new Button(shell, SWT.NONE);
+		close.setText("Close");
+		close.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, true, false));
+		close.addListener(SWT.Selection, e -> shell.dispose());
+
+		shell.setSize(760, 480);
+		shell.setLocation(Main.shell.getLocation().x + 100, Main.shell.getLocation().y + 100);
+		refresh();
+		shell.open();
+		Main.display.timerExec(refreshInterval, this::scheduledRefresh);
+	}
+
+	void close()
+	{
+		if (!shell.isDisposed())
+			shell.dispose();
+	}
+
+	boolean isDisposed()
+	{
+		return shell.isDisposed();
+	}
+
+	void setActive()
+	{
+		shell.setActive();
+	}
+
+	private void scheduledRefresh()
+	{
+		if (table.isDisposed())
+			return;
+		refresh();
+		Main.display.timerExec(refreshInterval, this::scheduledRefresh);
+	}
+
+	// states are updated in place, re-sorting and clearing the items repaints only the visible rows
+	private void refresh()
+	{
+		now = System.currentTimeMillis();
+		order = states.sorted(sortColumn, ascending, now);
+		table.setItemCount(order.length);
+		table.clearAll();
+	}
+
+	private void sortBy(final int column)
+	{
+		ascending = column != sortColumn || !ascending;
+		sortColumn = column;
+		table.setSortColumn(table.getColumn(column));
+		table.setSortDirection(ascending ? SWT.UP : SWT.DOWN);
+		refresh();
+	}
+}
@@ -0,0 +1,258 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * Current state of group addresses, updated in place by group events. States are stored in a table indexed by the raw
+ * 16 bit group address; the update rate is estimated using a sliding window of one minute. This class is
+ * thread-safe.
+ * <p>
+ * Columns: group address, name, last value, last source, updates, updates per minute, age.
+ */
+final class GroupStates
+{
+	static final int columns = 7;
+
+	private static final long minute = 60_000;
+
+	private static final class State
+	{
+		final int address;
+		String name = "";
+		byte[] asdu;
+		DptTranslator translator;
+		int source;
+		long updates;
+		// time of last update in milliseconds since the epoch
+		long updated;
+
+		// update counts of the current and the previous window of one minute
+		long window;
+		int current;
+		int previous;
+
+		State(final int address)
+		{
+			this.address = address;
+		}
+
+		void update(final long now)
+		{
+			final long w = now / minute;
+			if (w != window) {
+				previous = w == window + 1 ? current : 0;
+				current = 0;
+				window = w;
+			}
+			current++;
+			updates++;
+			updated = now;
+		}
+
+		// weighs the count of the previous window by its part overlapping the last minute
+		double rate(final long now)
+		{
+			final long w = now / minute;
+			final double elapsed = (double) (now % minute) / minute;
+			if (w == window)
+				return previous * (1 - elapsed) + current;
+			if (w == window + 1)
+				return current * (1 - elapsed);
+			return 0;
+		}
+	}
+
+	private final State[] states = new State[0x10000];
+	// addresses with a state, in order of their first update
+	private int[] addresses = new int[256];
+	private int size;
+
+	/**
+	 * Updates the state of a group address.
+	 *
+	 * @param dst raw group address
+	 * @param src raw individual address of the sender
+	 * @param asdu the value, the array is kept and must not be modified
+	 * @param translator translator of the datapoint type, or <code>null</code>
+	 * @param name datapoint name, or <code>null</code> if unknown
+	 * @param now time of the update in milliseconds since the epoch
+	 */
+	synchronized void update(final int dst, final int src, final byte[] asdu, final DptTranslator translator,
+		final String name, final long now)
+	{
+		State s = states[dst];
+		if (s == null) {
+			s = new State(dst);
+			states[dst] = s;
+			if (size == addresses.length)
+				addresses = Arrays.copyOf(addresses, 2 * size);
+			addresses[size++] = dst;
+		}
+		s.asdu = asdu;
+		s.translator = translator;
+		s.source = src;
+		if (name != null)
+			s.name = name;
+		s.update(now);
+	}
+
+	synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param address raw group address
+	 * @return time of the last update in milliseconds since the epoch, or 0 if the address has no state
+	 */
+	synchronized long lastUpdate(final int address)
+	{
+		final State s = states[address];
+		return s == null ? 0 : s.updated;
+	}
+
+	synchronized void clear()
+	{
+		for (int i = 0; i < size; i++)
+			states[addresses[i]] = null;
+		size = 0;
+	}
+
+	/**
+	 * Returns the group addresses with a state, sorted by a column.
+	 *
+	 * @param column column to sort by
+	 * @param ascending sort order
+	 * @param now current time in milliseconds since the epoch
+	 * @return raw group addresses
+	 */
+	synchronized int[] sorted(final int column, final boolean ascending, final long now)
+	{
+		final State[] sorted = new State[size];
+		for (int i = 0; i < size; i++)
+			sorted[i] = states[addresses[i]];
+		Comparator<State> c;
+		switch (column) {
+		case 1:
+		case 2:
+			final Map<State, String> texts = new HashMap<>();
+			for (final State s : sorted)
+				texts.put(s, text(s, column, now));
+			c = Comparator.comparing(texts::get);
+			break;
+		case 3:
+			c = Comparator.comparingInt(s -> s.source);
+			break;
+		case 4:
+			c = Comparator.comparingLong(s -> s.updates);
+			break;
+		case 5:
+			c = Comparator.comparingDouble(s -> s.rate(now));
+			break;
+		case 6:
+			c = Comparator.comparingLong(s -> now - s.updated);
+			break;
+		default:
+			c = Comparator.comparingInt(s -> s.address);
+		}
+		Arrays.sort(sorted, ascending ? c : c.reversed());
+		final int[] order = new int[sorted.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = sorted[i].address;
+		return order;
+	}
+
+	/**
+	 * @param address raw group address
+	 * @param now current time in milliseconds since the epoch
+	 * @return column texts of the group address state, or <code>null</code> if the address has no state
+	 */
+	synchronized String[] texts(final int address, final long now)
+	{
+		final State s = states[address];
+		if (s == null)
+			return null;
+		final String[] texts = new String[columns];
+		for (int i = 0; i < columns; i++)
+			texts[i] = text(s, i, now);
+		return texts;
+	}
+
+	private static String text(final State s, final int column, final long now)
+	{
+		switch (column) {
+		case 0:
+			return new GroupAddress(s.address).toString();
+		case 1:
+			return s.name;
+		case 2:
+			if (s.asdu.length == 0)
+				return "[empty]";
+			return s.translator != null ? s.translator.value(s.asdu) : DataUnitBuilder.toHex(s.asdu, " ");
+		case 3:
+			return new IndividualAddress(s.source).toString();
+		case 4:
+			return Long.toString(s.updates);
+		case 5:
+			return String.format("%.1f", s.rate(now));
+		case 6:
+			return age(now - s.updated);
+		default:
+			return "";
+		}
+	}
+
+	private static String age(final long millis)
+	{
+		final long seconds = Math.max(0, millis / 1000);
+		if (seconds < 60)
+			return seconds + " s";
+		if (seconds < 3600)
+			return seconds / 60 + " min " + seconds % 60 + " s";
+		return seconds / 3600 + " h " + seconds / 60 % 60 + " min";
+	}
+}
@@ -0,0 +1,202 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.datapoint.StateDP;
+import tuwien.auto.calimero.dptxlator.TranslatorTypes;
+import tuwien.auto.calimero.dptxlator.TranslatorTypes.MainType;
+import tuwien.auto.calimero.xml.KNXMLException;
+import tuwien.auto.calimero.xml.XmlInputFactory;
+import tuwien.auto.calimero.xml.XmlReader;
+
+/**
+ * Reads the group addresses of an ETS project archive (.knxproj) as datapoints. Installation data is read as an XML
+ * stream, without loading the project into memory. The datapoint type of a group address is taken from the group
+ * address, or otherwise from a communication object linked to it. Password protected projects are not supported.
+ */
+final class KnxProject
+{
+	static final String extension = ".knxproj";
+
+	// installation data of a project, e.g., P-0123/0.xml
+	private static final Pattern installation = Pattern.compile("P-[^/]+/[0-9]+\\.xml");
+	// password protected projects contain the project data as encrypted archive, e.g., P-0123.zip
+	private static final Pattern encrypted = Pattern.compile("P-[^/]+\\.zip");
+	// ETS datapoint type, e.g., DPT-9 or DPST-9-1
+	private static final Pattern dpt = Pattern.compile("DPS?T-([0-9]+)(?:-([0-9]+))?");
+
+	private KnxProject() {}
+
+	/**
+	 * @param zip project archive
+	 * @return the archive entries containing installation data
+	 * @throws IOException if the project is password protected or contains no installation
+	 */
+	static List<ZipEntry> installations(final ZipFile zip) throws IOException
+	{
+		final List<ZipEntry> installations = new ArrayList<>();
+		for (final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+			final ZipEntry entry = e.nextElement();
+			if (installation.matcher(entry.getName()).matches())
+				installations.add(entry);
+			else if (encrypted.matcher(entry.getName()).matches())
+				throw new IOException("password protected project " + entry.getName() + " is not supported");
+		}
+		if (installations.isEmpty())
+			throw new IOException("no ETS project installation found in " + zip.getName());
+		return installations;
+	}
+
+	/**
+	 * Reads the group addresses of one installation.
+	 *
+	 * @param is installation data
+	 * @param datapoints receives a datapoint for each group address
+	 * @param canceled stops reading if it returns <code>true</code>
+	 * @throws KNXMLException on malformed installation data
+	 */
+	static void read(final InputStream is, final Consumer<Datapoint> datapoints, final BooleanSupplier canceled)
+	{
+		// datapoint types of communication objects by linked group address id
+		final Map<String, String> linked = new HashMap<>();
+		// group addresses without datapoint type, resolved by linked communication objects at the end
+		final List<Datapoint> pending = new ArrayList<>();
+		final List<String> pendingIds = new ArrayList<>();
+		String objectDpt = null;
+
+		try (final XmlReader r = XmlInputFactory.newInstance().createXMLStreamReader(is)) {
+			while (r.hasNext() && !canceled.getAsBoolean()) {
+				final int event = r.next();
+				if (event == XmlReader.END_ELEMENT && "ComObjectInstanceRef".equals(r.getLocalName()))
+					objectDpt = null;
+				if (event != XmlReader.START_ELEMENT)
+					continue;
+				switch (r.getLocalName()) {
+				case "GroupAddress":
+					final String address = r.getAttributeValue(null, "Address");
+					if (address == null)
+						break;
+					final String name = r.getAttributeValue(null, "Name");
+					final GroupAddress main = new GroupAddress(Integer.parseInt(address));
+					final Datapoint dp = datapoint(main, name == null ? "" : name,
+							r.getAttributeValue(null, "DatapointType"));
+					if (dp.getDPT() != null)
+						datapoints.accept(dp);
+					else {
+						pending.add(dp);
+						pendingIds.add(idKey(r.getAttributeValue(null, "Id")));
+					}
+					break;
+				case "ComObjectInstanceRef":
+					objectDpt = r.getAttributeValue(null, "DatapointType");
+					// ETS 6 lists the linked group addresses as attribute
+					final String links = r.getAttributeValue(null, "Links");
+					if (objectDpt != null && links != null)
+						for (final String id : links.split(" "))
+							linked.putIfAbsent(idKey(id), objectDpt);
+					break;
+				case "Send":
+				case "Receive":
+					final String ref = r.getAttributeValue(null, "GroupAddressRefId");
+					if (objectDpt != null && ref != null)
+						linked.putIfAbsent(idKey(ref), objectDpt);
+					break;
+				default:
+				}
+			}
+		}
+		catch (final NumberFormatException e) {
+			throw new KNXMLException("invalid group address: " + e.getMessage());
+		}
+		for (int i = 0; i < pending.size() && !canceled.getAsBoolean(); i++) {
+			final Datapoint dp = pending.get(i);
+			final String linkedDpt = linked.get(pendingIds.get(i));
+			datapoints.accept(linkedDpt != null ? datapoint(dp.getMainAddress(), dp.getName(), linkedDpt) : dp);
+		}
+	}
+
+	private static Datapoint datapoint(final GroupAddress main, final String name, final String etsDpt)
+	{
+		final StateDP dp = new StateDP(main, name);
+		if (etsDpt == null)
+			return dp;
+		// several types are separated by space, use the first one
+		final Matcher m = dpt.matcher(etsDpt.trim().split(" ")[0]);
+		if (!m.matches())
+			return dp;
+		final int mainNumber = Integer.parseInt(m.group(1));
+		final MainType type = TranslatorTypes.getMainType(mainNumber);
+		if (type == null)
+			return dp;
+		try {
+			final String id = m.group(2) != null ? String.format("%d.%03d", mainNumber, Integer.parseInt(m.group(2)))
+					: new TreeMap<>(type.getSubTypes()).firstKey();
+			dp.setDPT(mainNumber, id);
+		}
+		catch (final KNXException e) {
+			// no subtypes available, keep datapoint without type
+		}
+		return dp;
+	}
+
+	// group address ids are unique within an installation, references omit the project part in ETS 6
+	private static String idKey(final String id)
+	{
+		if (id == null)
+			return "";
+		return id.substring(id.lastIndexOf('_') + 1);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+/**
+ * Row of a virtual list, which provides its column text on demand. Rows can keep their data in compact form and only
+ * format the columns of rows actually shown.
+ */
+interface ListRow
+{
+	/** Value key indicating that a column value is identified by its text. */
+	long textKey = -1;
+	/** Value key indicating that a column is not worth indexing, e.g., because its text is costly to format. */
+	long noIndex = -2;
+
+	/**
+	 * @return number of columns of this row
+	 */
+	int columns();
+
+	/**
+	 * @param column column index, <code>0 &le; column &lt; columns()</code>
+	 * @return column text
+	 */
+	String text(int column);
+
+	/**
+	 * Returns the text of all columns, the returned array must not be modified.
+	 *
+	 * @return column texts
+	 */
+	default String[] texts()
+	{
+		final String[] texts = new String[columns()];
+		for (int i = 0; i < texts.length; i++)
+			texts[i] = text(i);
+		return texts;
+	}
+
+	/**
+	 * Returns a key identifying the value of a column without formatting it: rows with equal keys have equal column
+	 * text. The default implementation returns {@link #textKey}.
+	 *
+	 * @param column column index
+	 * @return value key <code>&ge; 0</code>, {@link #textKey}, or {@link #noIndex}
+	 */
+	default long key(final int column)
+	{
+		return textKey;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import tuwien.auto.calimero.log.LogService.LogLevel;
+
+/**
+ * Log filter of a tab, with include and exclude patterns compiled once. Cheap checks are done first: the log level,
+ * then substring searches for patterns of the form <code>".*literal.*"</code>, and only then regular expressions.
+ * Patterns are tested against the logger name before the log text, so log records can be rejected before their
+ * message is formatted. Instances are immutable.
+ */
+final class LogFilter
+{
+	private final LogLevel level;
+	private final List<Predicate<String>> include;
+	private final List<Predicate<String>> exclude;
+
+	LogFilter(final LogLevel level)
+	{
+		this(level, Collections.emptyList(), Collections.emptyList());
+	}
+
+	private LogFilter(final LogLevel level, final List<Predicate<String>> include,
+		final List<Predicate<String>> exclude)
+	{
+		this.level = level;
+		this.include = include;
+		this.exclude = exclude;
+	}
+
+	LogFilter withLevel(final LogLevel level)
+	{
+		return new LogFilter(level, include, exclude);
+	}
+
+	LogFilter withInclude(final String... regex)
+	{
+		return new LogFilter(level, compile(include, regex), exclude);
+	}
+
+	LogFilter withExclude(final String... regex)
+	{
+		return new LogFilter(level, include, compile(exclude, regex));
+	}
+
+	/**
+	 * Checks a log record without its message.
+	 *
+	 * @param entryLevel level of the log record
+	 * @param logger logger name
+	 * @return <code>false</code> if the log record is rejected by this filter regardless of its message,
+	 *         <code>true</code> otherwise
+	 */
+	boolean accepts(final LogLevel entryLevel, final String logger)
+	{
+		if (entryLevel == null ? level != LogLevel.TRACE : entryLevel.ordinal() > level.ordinal())
+			return false;
+		if (logger != null)
+			for (final Predicate<String> p : exclude)
+				if (p.test(logger))
+					return false;
+		return true;
+	}
+
+	/**
+	 * @param entryLevel level of the log entry, <code>null</code> if the entry has no level (e.g., stack traces), in
+	 *        which case it is only accepted with log level {@link LogLevel#TRACE}
+	 * @param logger logger name, might be <code>null</code>
+	 * @param text log text
+	 * @return <code>true</code> if the log entry passes this filter, <code>false</code> otherwise
+	 */
+	boolean matches(final LogLevel entryLevel, final String logger, final String text)
+	{
+		if (!accepts(entryLevel, logger))
+			return false;
+		for (final Predicate<String> p : exclude)
+			if (p.test(text))
+				return false;
+		if (include.isEmpty())
+			return true;
+		for (final Predicate<String> p : include)
+			if ((logger != null && p.test(logger)) || p.test(text))
+				return true;
+		return false;
+	}
+
+	private static List<Predicate<String>> compile(final List<Predicate<String>> compiled, final String... regex)
+	{
+		final List<Predicate<String>> l = new ArrayList<>(compiled);
+		Arrays.stream(regex).map(LogFilter::compile).forEach(l::add);
+		// substring searches go first
+		l.sort((p1, p2) -> Boolean.compare(p1 instanceof RegexMatch, p2 instanceof RegexMatch));
+		return Collections.unmodifiableList(l);
+	}
+
+	private static Predicate<String> compile(final String regex)
+	{
+		if (regex.length() >= 4 && regex.startsWith(".*") && regex.endsWith(".*")) {
+			final String literal = literal(regex.substring(2, regex.length() - 2));
+			if (literal != null)
+				return s -> s.contains(literal);
+		}
+		return new RegexMatch(Pattern.compile(regex));
+	}
+
+	// returns the string matched by the regular expression, or null if the expression is not a plain literal
+	private static String literal(final String regex)
+	{
+		final String quoteStart = "\\Q";
+		final String quoteEnd = "\\E";
+		if (regex.startsWith(quoteStart) && regex.indexOf(quoteEnd) == regex.length() - quoteEnd.length())
+			return regex.substring(quoteStart.length(), regex.length() - quoteEnd.length());
+
+		final StringBuilder sb = new StringBuilder(regex.length());
+		for (int i = 0; i < regex.length(); i++) {
+			final char c = regex.charAt(i);
+			if (c == '\\') {
+				// only accept escaped metacharacters, not character classes or other constructs
+				if (++i == regex.length() || Character.isLetterOrDigit(regex.charAt(i)))
+					return null;
+				sb.append(regex.charAt(i));
+			}
+			else if ("[](){}.*+?^$|".indexOf(c) >= 0)
+				return null;
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static final class RegexMatch implements Predicate<String>
+	{
+		private final Pattern pattern;
+
+		RegexMatch(final Pattern pattern)
+		{
+			this.pattern = pattern;
+		}
+
+		@Override
+		public boolean test(final String s)
+		{
+			return pattern.matcher(s).matches();
+		}
+	}
+}
@@ -0,0 +1,348 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.gui;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.IMarkerFactory;
+import org.slf4j.Logger;
+import org.slf4j.helpers.BasicMarkerFactory;
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MarkerIgnoringBase;
+import org.slf4j.helpers.MessageFormatter;
+import org.slf4j.helpers.NOPMDCAdapter;
+import org.slf4j.spi.MDCAdapter;
+import org.slf4j.spi.SLF4JServiceProvider;
+
+import tuwien.auto.calimero.log.LogService.LogLevel;
+
+/**
+ * SLF4J binding of the GUI, delivering log records directly to a log sink instead of formatting them to an output
+ * stream. A log message is only formatted if the sink is interested in the level and logger of the record. Until the
+ * GUI installs its sink, messages of level info and above are written to <code>System.err</code>.
+ */
+public final class LogProvider implements SLF4JServiceProvider
+{
+	/**
+	 * Receiver of log records.
+	 */
+	interface Sink
+	{
+		boolean isEnabled(LogLevel level, String logger);
+
+		/**
+		 * Invoked for every log record enabled by {@link #isEnabled(LogLevel, String)}, in the thread that logged
+		 * the record.
+		 */
+		void log(LogLevel level, String logger, long timestamp, String message, Throwable t);
+	}
+
+	private static final Sink console = new Sink() {
+		@Override
+		public boolean isEnabled(final LogLevel level, final String logger)
+		{
+			return level.ordinal() <= LogLevel.INFO.ordinal();
+		}
+
+		@Override
+		public void log(final LogLevel level, final String logger, final long timestamp, final String message,
+			final Throwable t)
+		{
+			System.err.println("[" + Thread.currentThread().getName() + "] " + level + " " + logger + " - " + message);
+			if (t != null)
+				t.printStackTrace();
+		}
+	};
+
+	private static volatile Sink sink = console;
+
+	private ILoggerFactory loggerFactory;
+	private IMarkerFactory markerFactory;
+	private MDCAdapter mdcAdapter;
+
+	static void setSink(final Sink s)
+	{
+		sink = s;
+	}
+
+	@Override
+	public ILoggerFactory getLoggerFactory()
+	{
+		return loggerFactory;
+	}
+
+	@Override
+	public IMarkerFactory getMarkerFactory()
+	{
+		return markerFactory;
+	}
+
+	@Override
+	public MDCAdapter getMDCAdapter()
+	{
+		return mdcAdapter;
+	}
+
+	@Override
+	public String getRequesteApiVersion()
+	{
+		return "1.8";
+	}
+
+	@Override
+	public void initialize()
+	{
+		final ConcurrentMap<String, Logger> loggers = new ConcurrentHashMap<>();
+		loggerFactory = name -> loggers.computeIfAbsent(name, TabLogger::new);
+		markerFactory = new BasicMarkerFactory();
+		mdcAdapter = new NOPMDCAdapter();
+	}
+
+	private static final class TabLogger extends MarkerIgnoringBase
+	{
+		private static final long serialVersionUID = 1L;
+
+		TabLogger(final String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public boolean isTraceEnabled()
+		{
+			return isEnabled(LogLevel.TRACE);
+		}
+
+		@Override
+		public void trace(final String msg)
+		{
+			logMessage(LogLevel.TRACE, msg, null);
+		}
+
+		@Override
+		public void trace(final String format, final Object arg)
+		{
+			log(LogLevel.TRACE, format, arg);
+		}
+
+		@Override
+		public void trace(final String format, final Object arg1, final Object arg2)
+		{
+			log(LogLevel.TRACE, format, arg1, arg2);
+		}
+
+		@Override
+		public void trace(final String format, final Object... arguments)
+		{
+			log(LogLevel.TRACE, format, arguments);
+		}
+
+		@Override
+		public void trace(final String msg, final Throwable t)
+		{
+			logMessage(LogLevel.TRACE, msg, t);
+		}
+
+		@Override
+		public boolean isDebugEnabled()
+		{
+			return isEnabled(LogLevel.DEBUG);
+		}
+
+		@Override
+		public void debug(final String msg)
+		{
+			logMessage(LogLevel.DEBUG, msg, null);
+		}
+
+		@Override
+		public void debug(final String format, final Object arg)
+		{
+			log(LogLevel.DEBUG, format, arg);
+		}
+
+		@Override
+		public void debug(final String format, final Object arg1, final Object arg2)
+		{
+			log(LogLevel.DEBUG, format, arg1, arg2);
+		}
+
+		@Override
+		public void debug(final String format, final Object... arguments)
+		{
+			log(LogLevel.DEBUG, format, arguments);
+		}
+
+		@Override
+		public void debug(final String msg, final Throwable t)
+		{
+			logMessage(LogLevel.DEBUG, msg, t);
+		}
+
+		@Override
+		public boolean isInfoEnabled()
+		{
+			return isEnabled(LogLevel.INFO);
+		}
+
+		@Override
+		public void info(final String msg)
+		{
+			logMessage(LogLevel.INFO, msg, null);
+		}
+
+		@Override
+		public void info(final String format, final Object arg)
+		{
+			log(LogLevel.INFO, format, arg);
+		}
+
+		@Override
+		public void info(final String format, final Object arg1, final Object arg2)
+		{
+			log(LogLevel.INFO, format, arg1, arg2);
+		}
+
+		@Override
+		public void info(final String format, final Object... arguments)
+		{
+			log(LogLevel.INFO, format, arguments);
+		}
+
+		@Override
+		public void info(final String msg, final Throwable t)
+		{
+			logMessage(LogLevel.INFO, msg, t);
+		}
+
+		@Override
+		public boolean isWarnEnabled()
+		{
+			return isEnabled(LogLevel.WARN);
+		}
+
+		@Override
+		public void warn(final String msg)
+		{
+			logMessage(LogLevel.WARN, msg, null);
+		}
+
+		@Override
+		public void warn(final String format, final Object arg)
+		{
+			log(LogLevel.WARN, format, arg);
+		}
+
+		@Override
+		public void warn(final String format, final Object arg1, final Object arg2)
+		{
+			log(LogLevel.WARN, format, arg1, arg2);
+		}
+
+		@Override
+		public void warn(final String format, final Object... arguments)
+		{
+			log(LogLevel.WARN, format, arguments);
+		}
+
+		@Override
+		public void warn(final String msg, final Throwable t)
+		{
+			logMessage(LogLevel.WARN, msg, t);
+		}
+
+		@Override
+		public boolean isErrorEnabled()
+		{
+			return isEnabled(LogLevel.ERROR);
+		}
+
+		@Override
+		public void error(final String msg)
+		{
+			logMessage(LogLevel.ERROR, msg, null);
+		}
+
+		@Override
+		public void error(final String format, final Object arg)
+		{
+			log(LogLevel.ERROR, format, arg);
+		}
+
+		@Override
+		public void error(final String format, final Object arg1, final Object arg2)
+		{
+			log(LogLevel.ERROR, format, arg1, arg2);
+		}
+
+		@Override
+		public void error(final String format, final Object... arguments)
+		{
+			log(LogLevel.ERROR, format, arguments);
+		}
+
+		@Override
+		public void error(final String msg, final Throwable t)
+		{
+			logMessage(LogLevel.ERROR, msg, t);
+		}
+
+		private boolean isEnabled(final LogLevel level)
+		{
+			return sink.isEnabled(level, name);
+		}
+
+		private void logMessage(final LogLevel level, final String msg, final Throwable t)
+		{
+			final Sink s = sink;
+			if (s.isEnabled(level, name))
+				s.log(level, name, System.currentTimeMillis(), msg, t);
+		}
+
+		private void log(final LogLevel level, final String format, final Object... arguments)
+		{
+			final Sink s = sink;
+			if (!s.isEnabled(level, name))
+				return;
+			// formatting is only done for enabled records
+			final FormattingTuple tuple = MessageFormatter.arrayFormat(format, arguments);
+			s.log(level, name, System.currentTimeMillis(), tuple.getMessage(), tuple.getThrowable());
+		}
+	}
+}
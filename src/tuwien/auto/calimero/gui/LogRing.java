@@ -0,0 +1,136 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.gui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import tuwien.auto.calimero.log.LogService.LogLevel;
+
+/**
+ * Append-only log ring shared by all tabs. Log lines are appended once, independent of the number of open tabs; each
+ * tab reads the lines it has not seen yet using its own cursor. Appending is lock-free and safe for multiple threads,
+ * if a reader falls behind by more than the ring capacity, the overwritten lines are skipped.
+ */
+final class LogRing
+{
+	static final class Entry
+	{
+		final long seq;
+		// tab which added the entry, null for log output visible to all tabs
+		final Object owner;
+		// level and logger are null for log text not originating from a logger
+		final LogLevel level;
+		final String logger;
+		final long timestamp;
+		final String text;
+
+		private Entry(final long seq, final Object owner, final LogLevel level, final String logger,
+			final long timestamp, final String text)
+		{
+			this.seq = seq;
+			this.owner = owner;
+			this.level = level;
+			this.logger = logger;
+			this.timestamp = timestamp;
+			this.text = text;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry> entries;
+	private final AtomicLong next = new AtomicLong();
+
+	LogRing(final int capacity)
+	{
+		entries = new AtomicReferenceArray<>(capacity);
+	}
+
+	/**
+	 * Appends a log line.
+	 *
+	 * @param owner tab which only shall show this log line, or <code>null</code> for all tabs
+	 * @param level log level, might be <code>null</code>
+	 * @param logger logger name, might be <code>null</code>
+	 * @param timestamp time of the log event in milliseconds since the epoch
+	 * @param text log text
+	 */
+	void append(final Object owner, final LogLevel level, final String logger, final long timestamp,
+		final String text)
+	{
+		final long seq = next.getAndIncrement();
+		entries.set(index(seq), new Entry(seq, owner, level, logger, timestamp, text));
+	}
+
+	/**
+	 * @return cursor position after the most recently appended entry
+	 */
+	long end()
+	{
+		return next.get();
+	}
+
+	/**
+	 * Reads all entries available from the cursor position onwards.
+	 *
+	 * @param cursor sequence number of the first entry to read
+	 * @param consumer consumer of the entries read
+	 * @return the cursor position after the last entry read; the difference to the number of entries consumed is the
+	 *         number of entries skipped because they were already overwritten
+	 */
+	long read(final long cursor, final Consumer<Entry> consumer)
+	{
+		final long end = next.get();
+		long seq = Math.max(cursor, end - entries.length());
+		for (; seq < end; seq++) {
+			final Entry e = entries.get(index(seq));
+			// entry is reserved, but not yet set by the appending thread
+			if (e == null || e.seq < seq)
+				break;
+			// entry got overwritten meanwhile
+			if (e.seq > seq)
+				continue;
+			consumer.accept(e);
+		}
+		return seq;
+	}
+
+	private int index(final long seq)
+	{
+		return (int) (seq % entries.length());
+	}
+}
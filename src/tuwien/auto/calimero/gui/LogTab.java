@@ -36,6 +36,9 @@
 
 package tuwien.auto.calimero.gui;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -46,6 +49,7 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Sash;
 import org.eclipse.swt.widgets.Scale;
@@ -59,13 +63,21 @@ class LogTab extends BaseTabLayout
 {
 	private static final String[] levels = new String[] { "Error", "Warn", "Info", "Debug", "Trace" };
 
+	// log retention of the logging tab, lines dropped can be spilled to rotating log files
+	private static final int maxLogLines = 200_000;
+	private static final long maxLogBytes = 64 * 1024 * 1024;
+	private static final long maxSpillFileSize = 16 * 1024 * 1024;
+	private static final int spillFiles = 5;
+
 	private Button clear;
+	private Button spill;
 	private Label loglevel;
 	private Scale scale;
 
 	LogTab(final CTabFolder tf)
 	{
 		super(tf, "Logging", "Shows log output of all open tabs");
+		log.setRetention(maxLogLines, maxLogBytes);
 	}
 
 	@Override
@@ -81,7 +93,7 @@ class LogTab extends BaseTabLayout
 	{
 		super.initWorkAreaTop();
 
-		((GridLayout) top.getLayout()).numColumns = 4;
+		((GridLayout) top.getLayout()).numColumns = 5;
 		((GridLayout) top.getLayout()).makeColumnsEqualWidth = false;
 		((GridLayout) top.getLayout()).horizontalSpacing = 10 * ((GridLayout) top.getLayout()).horizontalSpacing;
 
@@ -94,6 +106,10 @@ class LogTab extends BaseTabLayout
 				log.removeAll();
 			}
 		});
+		spill = new Button(top, SWT.CHECK);
+		spill.setText("Write dropped lines to file");
+		spill.setToolTipText("Log lines exceeding the log retention are written to rotating log files");
+		spill.addSelectionListener(selected(e -> spillLog(spill.getSelection())));
 		loglevel = new Label(top, SWT.NONE);
 
 		final Composite scaleArea = new Composite(top, SWT.NONE);
@@ -122,6 +138,30 @@ class LogTab extends BaseTabLayout
 		scaleArea.layout(true);
 	}
 
+	private void spillLog(final boolean enable)
+	{
+		String file = null;
+		if (enable) {
+			final FileDialog dlg = new FileDialog(Main.shell, SWT.SAVE);
+			dlg.setOverwrite(true);
+			dlg.setFileName("calimero-gui.log");
+			file = dlg.open();
+			if (file == null) {
+				spill.setSelection(false);
+				return;
+			}
+		}
+		try {
+			log.spillTo(file != null ? Paths.get(file) : null, maxSpillFileSize, spillFiles);
+			if (file != null)
+				asyncAddLog("writing dropped log lines to " + file);
+		}
+		catch (final IOException e) {
+			spill.setSelection(false);
+			asyncAddLog("error opening log file " + file + ": " + e.getMessage());
+		}
+	}
+
 	private void adjustLogLevel(final int level)
 	{
 		final String name = levels[level];
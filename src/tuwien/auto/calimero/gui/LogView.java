@@ -0,0 +1,332 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.dnd.Clipboard;
+import org.eclipse.swt.dnd.TextTransfer;
+import org.eclipse.swt.dnd.Transfer;
+import org.eclipse.swt.events.KeyAdapter;
+import org.eclipse.swt.events.KeyEvent;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Sash;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+/**
+ * Log pane of a tab. Log lines are kept in a bounded buffer, limited by number of lines and by their size; a virtual
+ * table only creates items for the lines painted. Lines dropped from the buffer can be spilled to a rotating set of
+ * log files. All methods must be invoked from the GUI thread.
+ */
+final class LogView
+{
+	// default retention of log lines
+	static final int defaultMaxLines = 20_000;
+	static final long defaultMaxBytes = 8 * 1024 * 1024;
+
+	private final Table table;
+	private final TableColumn column;
+	private final int charWidth;
+
+	private RingBuffer<String> lines;
+	private long maxBytes;
+	// estimated heap size of the buffered lines
+	private long bytes;
+	// length of the longest line shown, used for the column width
+	private int maxLength;
+
+	// spill file and its rotation, writer is null if spilling is off
+	private Path spillFile;
+	private long maxSpillFileSize;
+	private int spillFiles;
+	private Writer spill;
+	private long spillFileSize;
+	private String spillError;
+
+	LogView(final Composite parent, final Sash sash)
+	{
+		table = new Table(parent, SWT.MULTI | SWT.V_SCROLL | SWT.H_SCROLL | SWT.VIRTUAL);
+		table.setBackground(new Color(Main.display, 255, 255, 255));
+		table.setFont(Main.font);
+		table.setHeaderVisible(false);
+		table.setLinesVisible(false);
+		column = new TableColumn(table, SWT.LEFT);
+		final GC gc = new GC(table);
+		charWidth = gc.getFontMetrics().getAverageCharWidth();
+		gc.dispose();
+
+		final FormData logData = new FormData();
+		logData.top = new FormAttachment(sash);
+		logData.bottom = new FormAttachment(100);
+		logData.left = new FormAttachment(0);
+		logData.right = new FormAttachment(100);
+		table.setLayoutData(logData);
+
+		lines = new RingBuffer<>(defaultMaxLines);
+		maxBytes = defaultMaxBytes;
+		table.addListener(SWT.SetData, e -> {
+			final TableItem item = (TableItem) e.item;
+			final int index = e.index;
+			if (index < lines.size())
+				item.setText(lines.get(lines.first() + index));
+		});
+		table.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyReleased(final KeyEvent e)
+			{
+				if ((e.stateMask == SWT.COMMAND || e.stateMask == SWT.CTRL) && e.keyCode == 'c') {
+					final String textData = IntStream.of(table.getSelectionIndices()).sorted()
+							.filter(i -> i < lines.size()).mapToObj(i -> lines.get(lines.first() + i))
+							.collect(Collectors.joining("\n"));
+					if (textData.length() > 0) {
+						final TextTransfer textTransfer = TextTransfer.getInstance();
+						final Clipboard cb = new Clipboard(Main.display);
+						cb.setContents(new Object[] { textData }, new Transfer[] { textTransfer });
+						cb.dispose();
+						e.doit = false;
+					}
+				}
+			}
+		});
+		table.addDisposeListener(e -> closeSpill());
+	}
+
+	/**
+	 * Sets the retention of log lines, the oldest lines are dropped first once either limit is exceeded.
+	 *
+	 * @param maxLines maximum number of lines kept, <code>maxLines &gt; 0</code>
+	 * @param maxBytes maximum (estimated) memory used by the lines kept, <code>maxBytes &gt; 0</code>
+	 */
+	void setRetention(final int maxLines, final long maxBytes)
+	{
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("log retention of " + maxBytes + " bytes");
+		final RingBuffer<String> old = lines;
+		lines = new RingBuffer<>(maxLines);
+		this.maxBytes = maxBytes;
+		// keep the newest lines
+		final long start = Math.max(old.first(), old.end() - maxLines);
+		for (long seq = old.first(); seq < start; seq++)
+			evicted(old.get(seq));
+		bytes = 0;
+		for (long seq = start; seq < old.end(); seq++) {
+			final String s = old.get(seq);
+			lines.add(s);
+			bytes += size(s);
+		}
+		trim();
+		table.clearAll();
+		table.setItemCount(lines.size());
+	}
+
+	/**
+	 * Writes log lines dropped from the log view to a file, instead of discarding them. Once the file exceeds its
+	 * maximum size, it is rotated: <code>file</code> is renamed to <code>file.1</code>, <code>file.1</code> to
+	 * <code>file.2</code>, and so on, keeping at most <code>files</code> files.
+	 *
+	 * @param file spill file, or <code>null</code> to stop spilling log lines
+	 * @param maxFileSize maximum size of a spill file in bytes
+	 * @param files maximum number of spill files, <code>files &gt; 0</code>
+	 * @throws IOException on error opening the spill file
+	 */
+	void spillTo(final Path file, final long maxFileSize, final int files) throws IOException
+	{
+		closeSpill();
+		spillFile = file;
+		maxSpillFileSize = maxFileSize;
+		spillFiles = files;
+		if (file != null)
+			openSpill();
+	}
+
+	boolean isDisposed()
+	{
+		return table.isDisposed();
+	}
+
+	void add(final String line)
+	{
+		add(Collections.singletonList(line));
+	}
+
+	/**
+	 * Adds log lines, and scrolls to the last line if the log view was scrolled to its end before.
+	 *
+	 * @param added log lines to add
+	 */
+	void add(final Collection<String> added)
+	{
+		if (added.isEmpty())
+			return;
+		final int items = table.getItemCount();
+		final int top = table.getTopIndex();
+		final Rectangle area = table.getClientArea();
+		final int height = table.getItemHeight();
+		final int visible = (area.height + height - 1) / height;
+		final boolean atEnd = top + visible >= items;
+
+		final long first = lines.first();
+		int longest = maxLength;
+		for (final String s : added) {
+			if (lines.size() == lines.capacity())
+				evict();
+			lines.add(s);
+			bytes += size(s);
+			longest = Math.max(longest, s.length());
+		}
+		trim();
+
+		table.setRedraw(false);
+		final int dropped = (int) Math.min(lines.first() - first, items);
+		if (dropped == items)
+			table.clearAll();
+		else if (dropped > 0)
+			table.remove(0, dropped - 1);
+		table.setItemCount(lines.size());
+		if (longest > maxLength) {
+			maxLength = longest;
+			column.setWidth((maxLength + 2) * charWidth);
+		}
+		if (atEnd)
+			table.setTopIndex(lines.size() - 1);
+		table.setRedraw(true);
+
+		if (spillError != null) {
+			final String error = spillError;
+			spillError = null;
+			add(error);
+		}
+	}
+
+	void removeAll()
+	{
+		lines.clear();
+		bytes = 0;
+		maxLength = 0;
+		table.removeAll();
+		column.setWidth(0);
+	}
+
+	private void trim()
+	{
+		while (bytes > maxBytes && lines.size() > 1)
+			evict();
+	}
+
+	private void evict()
+	{
+		final String s = lines.removeFirst();
+		bytes -= size(s);
+		evicted(s);
+	}
+
+	private void evicted(final String line)
+	{
+		if (spill == null)
+			return;
+		try {
+			spill.write(line);
+			spill.write('\n');
+			spillFileSize += line.length() + 1;
+			if (spillFileSize >= maxSpillFileSize) {
+				closeSpill();
+				rotate();
+				openSpill();
+			}
+		}
+		catch (final IOException e) {
+			closeSpill();
+			spillFile = null;
+			spillError = "> spilling log lines stopped: " + e.getMessage();
+		}
+	}
+
+	private void openSpill() throws IOException
+	{
+		spill = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+		spillFileSize = 0;
+	}
+
+	private void rotate() throws IOException
+	{
+		final String name = spillFile.toString();
+		Files.deleteIfExists(Paths.get(name + "." + (spillFiles - 1)));
+		for (int i = spillFiles - 2; i > 0; i--) {
+			final Path p = Paths.get(name + "." + i);
+			if (Files.exists(p))
+				Files.move(p, Paths.get(name + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+		}
+		if (spillFiles > 1)
+			Files.move(spillFile, Paths.get(name + ".1"), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void closeSpill()
+	{
+		if (spill == null)
+			return;
+		try {
+			spill.close();
+		}
+		catch (final IOException ignore) {}
+		spill = null;
+	}
+
+	// rough heap size of a log line
+	private static long size(final String s)
+	{
+		return 40 + 2L * s.length();
+	}
+}
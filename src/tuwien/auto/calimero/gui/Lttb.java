@@ -0,0 +1,111 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of time series. The samples between the first and last one are split
+ * into equally sized buckets; from each bucket the sample forming the largest triangle with the previously selected
+ * sample and the average of the next bucket is kept. This preserves peaks and the visual shape of a series with a
+ * fraction of its samples.
+ */
+final class Lttb
+{
+	private Lttb() {}
+
+	/**
+	 * Selects at most <code>threshold</code> samples of the range <code>[from, to)</code>.
+	 *
+	 * @param times sample times in ascending order
+	 * @param values sample values
+	 * @param from index of the first sample (inclusive)
+	 * @param to index of the last sample (exclusive)
+	 * @param threshold maximum number of selected samples, at least 3
+	 * @param selected receives the indices of the selected samples in ascending order, with a length of at least
+	 *        <code>min(threshold, to - from)</code>
+	 * @return number of selected samples
+	 */
+	static int downsample(final long[] times, final double[] values, final int from, final int to,
+		final int threshold, final int[] selected)
+	{
+		final int n = to - from;
+		if (n <= threshold || threshold < 3) {
+			final int count = Math.min(n, selected.length);
+			for (int i = 0; i < count; i++)
+				selected[i] = from + i;
+			return count;
+		}
+
+		final long origin = times[from];
+		final double every = (double) (n - 2) / (threshold - 2);
+		int count = 0;
+		int a = from;
+		selected[count++] = a;
+		for (int i = 0; i < threshold - 2; i++) {
+			// average of the next bucket, the last sample for the last bucket
+			final int nextStart = from + (int) ((i + 1) * every) + 1;
+			final int nextEnd = Math.min(from + (int) ((i + 2) * every) + 1, to);
+			double avgX = 0;
+			double avgY = 0;
+			for (int k = nextStart; k < nextEnd; k++) {
+				avgX += times[k] - origin;
+				avgY += values[k];
+			}
+			final int nextCount = nextEnd - nextStart;
+			avgX /= nextCount;
+			avgY /= nextCount;
+
+			final int start = from + (int) (i * every) + 1;
+			final int end = nextStart;
+			final double ax = times[a] - origin;
+			final double ay = values[a];
+			double maxArea = -1;
+			int max = start;
+			for (int k = start; k < end; k++) {
+				final double area = Math.abs((ax - avgX) * (values[k] - ay) - (ax - (times[k] - origin)) * (avgY - ay));
+				if (area > maxArea) {
+					maxArea = area;
+					max = k;
+				}
+			}
+			selected[count++] = max;
+			a = max;
+		}
+		selected[count++] = to - 1;
+		return count;
+	}
+}
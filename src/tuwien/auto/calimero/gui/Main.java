@@ -36,11 +36,13 @@
 
 package tuwien.auto.calimero.gui;
 
+import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Locale;
 import java.util.Optional;
@@ -60,6 +62,7 @@ import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
@@ -100,6 +103,7 @@ public class Main
 		addToolItem(header, "Connect ...",
 				() -> new ConnectDialog(tf, Protocol.Unknown, null, null, "", "", null, null, false));
 		addToolItem(header, "Show log", () -> new LogTab(tf));
+		addToolItem(header, "Replay capture ...", this::replayCapture);
 		addToolItem(header, "About", () -> new About(shell));
 
 		// use separator to start area for local host fields
@@ -313,6 +317,22 @@ public class Main
 		};
 	}
 
+	private void replayCapture()
+	{
+		final FileDialog dlg = new FileDialog(shell, SWT.OPEN);
+		dlg.setText("Replay capture file");
+		dlg.setFilterExtensions(new String[] { "*.kcap", "*.*" });
+		final String file = dlg.open();
+		if (file == null)
+			return;
+		try {
+			new MonitorTab(tf, new CaptureReader(Paths.get(file)));
+		}
+		catch (final IOException e) {
+			discoverTab.asyncAddLog("Replay of " + file + " failed: " + e.getMessage());
+		}
+	}
+
 	private ConnectArguments ofDefaultInterface()
 	{
 		final Optional<ConnectArguments> args = discoverTab.defaultInterface();
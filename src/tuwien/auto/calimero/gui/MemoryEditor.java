@@ -41,9 +41,6 @@ import java.io.Writer;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -300,7 +297,7 @@ class MemoryEditor extends BaseTabLayout
 			final char comma = ' ';
 			final char delim = '\n';
 
-			final Writer w = Files.newBufferedWriter(Paths.get(resource), StandardCharsets.UTF_8);
+			final Writer w = openExport(resource);
 			w.write("Start Offset ");
 			w.write(Integer.toHexString(viewerStartOffset));
 			w.write(delim);
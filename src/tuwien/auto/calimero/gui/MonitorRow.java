@@ -0,0 +1,415 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.KNXFormatException;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.cemi.CEMIFactory;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.RawFrame;
+import tuwien.auto.calimero.link.medium.RawFrameBase;
+import tuwien.auto.calimero.link.medium.RawFrameFactory;
+
+/**
+ * Network monitor list row, keeping the received cEMI frame. Sequence number, status, timestamp, and for TP1 frames
+ * the destination and TPDU, are read directly from the frame bytes when the row is created; column text is only
+ * formatted when requested. Frames of other media are decoded by the raw frame factory on formatting.
+ * <p>
+ * Columns: counter, filtered counter (empty), timestamp, sequence / status, raw frame, decoded raw frame, TPCI /
+ * APCI, ASDU.
+ * <p>
+ * For bus statistics, the row also provides source, repetition, acknowledge, and length of the frame on the medium.
+ */
+final class MonitorRow implements ListRow
+{
+	private static final int columns = 8;
+
+	private static final int mcBusmon = CEMIBusMon.MC_BUSMON_IND;
+	private static final int mcLDataInd = CEMILData.MC_LDATA_IND;
+
+	// cEMI additional info types
+	private static final int statusInfo = 0x03;
+	private static final int timestampInfo = 0x04;
+	private static final int extTimestampInfo = 0x06;
+
+	// cEMI busmonitor status flags
+	private static final int frameError = 0x80;
+	private static final int bitError = 0x40;
+	private static final int parityError = 0x20;
+	private static final int lost = 0x08;
+
+	private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+	private final long counter;
+	private final byte[] frame;
+	private final int medium;
+	private final boolean busmon;
+	// offset of the raw frame (busmonitor) or L-Data control field in the cEMI frame
+	private final int payload;
+	private final long timestamp;
+	// busmonitor status, -1 for L-Data frames
+	private final int status;
+	// offset and length of the TPDU, -1 if not decoded
+	private final int tpdu;
+	private final int tpduLength;
+	private final int dst;
+	private final boolean group;
+	// source address, -1 if not decoded
+	private final int src;
+	private final boolean repeated;
+	// TP1 acknowledge frame, -1 for other frames
+	private final int ack;
+
+	private MonitorRow(final long counter, final byte[] frame, final int medium)
+		throws KNXFormatException
+	{
+		this.counter = counter;
+		this.frame = frame;
+		this.medium = medium;
+		if (frame.length < 2)
+			throw new KNXFormatException("cEMI frame too short", frame.length);
+		final int mc = frame[0] & 0xff;
+		busmon = mc == mcBusmon;
+		if (!busmon && mc != mcLDataInd)
+			throw new KNXFormatException("unsupported cEMI message code", mc);
+		payload = 2 + (frame[1] & 0xff);
+		if (payload > frame.length)
+			throw new KNXFormatException("cEMI additional info exceeds frame", payload);
+
+		long ts = 0;
+		int st = busmon ? 0 : -1;
+		for (int i = 2; i + 1 < payload; i += 2 + (frame[i + 1] & 0xff)) {
+			final int type = frame[i] & 0xff;
+			final int length = frame[i + 1] & 0xff;
+			if (type == statusInfo && length == 1)
+				st = frame[i + 2] & 0xff;
+			else if (type == timestampInfo && length == 2)
+				ts = unsigned(frame, i + 2, 2);
+			else if (type == extTimestampInfo && length == 4)
+				ts = unsigned(frame, i + 2, 4);
+		}
+		timestamp = ts;
+		status = st;
+
+		int offset = -1;
+		int length = -1;
+		int address = 0;
+		boolean groupAddress = false;
+		int source = -1;
+		boolean repetition = false;
+		int acknowledge = -1;
+		final int n = frame.length - payload;
+		if (!busmon) {
+			// ctrl1, ctrl2, source, destination, length, TPDU
+			if (n >= 8 && n >= 8 + (frame[payload + 6] & 0xff)) {
+				// repeat flag of an indication is cleared for repeated frames
+				repetition = (frame[payload] & 0x20) == 0;
+				groupAddress = (frame[payload + 1] & 0x80) != 0;
+				source = (int) unsigned(frame, payload + 2, 2);
+				address = (int) unsigned(frame, payload + 4, 2);
+				offset = payload + 7;
+				length = (frame[payload + 6] & 0xff) + 1;
+			}
+		}
+		else if (medium == KNXMediumSettings.MEDIUM_TP1 && n > 0) {
+			final int ctrl = frame[payload] & 0xff;
+			if ((ctrl & 0xd3) == 0x90 && n >= 8) {
+				// standard frame: ctrl, source, destination, address type / hop count / length, TPDU, checksum
+				final int npci = frame[payload + 5] & 0xff;
+				if (n >= 8 + (npci & 0x0f)) {
+					repetition = (ctrl & 0x20) == 0;
+					groupAddress = (npci & 0x80) != 0;
+					source = (int) unsigned(frame, payload + 1, 2);
+					address = (int) unsigned(frame, payload + 3, 2);
+					offset = payload + 6;
+					length = (npci & 0x0f) + 1;
+				}
+			}
+			else if ((ctrl & 0xd3) == 0x10 && n >= 9) {
+				// extended frame: ctrl, ctrle, source, destination, length, TPDU, checksum
+				final int len = frame[payload + 6] & 0xff;
+				if (n >= 9 + len) {
+					repetition = (ctrl & 0x20) == 0;
+					groupAddress = (frame[payload + 1] & 0x80) != 0;
+					source = (int) unsigned(frame, payload + 2, 2);
+					address = (int) unsigned(frame, payload + 4, 2);
+					offset = payload + 7;
+					length = len + 1;
+				}
+			}
+			else if (n == 1 && (ctrl & 0x33) == 0)
+				acknowledge = ctrl;
+		}
+		tpdu = offset;
+		tpduLength = length;
+		dst = address;
+		group = groupAddress;
+		src = source;
+		repeated = repetition;
+		ack = acknowledge;
+	}
+
+	/**
+	 * Creates a row of a cEMI busmonitor indication or L-Data indication.
+	 *
+	 * @param counter event counter
+	 * @param frame cEMI frame, the row keeps a reference
+	 * @param medium KNX medium of the raw frame
+	 * @return the row
+	 * @throws KNXFormatException on unsupported cEMI frame
+	 */
+	static MonitorRow decode(final long counter, final byte[] frame, final int medium) throws KNXFormatException
+	{
+		return new MonitorRow(counter, frame, medium);
+	}
+
+	/**
+	 * @return busmonitor status, -1 for L-Data frames
+	 */
+	int status()
+	{
+		return status;
+	}
+
+	/**
+	 * @return raw source address, or -1 if the frame was not decoded
+	 */
+	int source()
+	{
+		return src;
+	}
+
+	/**
+	 * @return raw destination address, group addresses are offset by <code>0x10000</code>; or -1 if the frame was
+	 *         not decoded
+	 */
+	int destination()
+	{
+		return tpdu < 0 ? -1 : group ? 0x10000 | dst : dst;
+	}
+
+	boolean isRepetition()
+	{
+		return repeated;
+	}
+
+	/**
+	 * @return the TP1 acknowledge frame (ACK 0xcc, NAK 0x0c, BUSY 0xc0, NAK and BUSY 0x00), or -1 for other frames
+	 */
+	int acknowledge()
+	{
+		return ack;
+	}
+
+	/**
+	 * @return application layer service of the frame, i.e., the APCI without data bits; or -1 if the frame carries
+	 *         no APDU
+	 */
+	int apci()
+	{
+		// transport control frames carry no APDU
+		if (tpdu < 0 || tpduLength < 2 || (frame[tpdu] & 0x80) != 0)
+			return -1;
+		final int apci = (frame[tpdu] & 0x03) << 8 | frame[tpdu + 1] & 0xff;
+		// services with a 4 bit APCI carry data in the lower 6 bits, the escape codes use all 10 bits
+		final int service = apci & 0x3c0;
+		return service == 0x2c0 || service == 0x3c0 ? apci : service;
+	}
+
+	/**
+	 * @return length of the frame on the medium in octets; for L-Data frames, the length of the corresponding TP1
+	 *         frame
+	 */
+	int mediumLength()
+	{
+		if (busmon || tpdu < 0)
+			return busmon ? frame.length - payload : frame.length - payload - 1;
+		// ctrl, (ctrle,) source, destination, length, TPDU, checksum
+		return (tpduLength <= 16 ? 7 : 8) + tpduLength;
+	}
+
+	@Override
+	public int columns()
+	{
+		return columns;
+	}
+
+	@Override
+	public String text(final int column)
+	{
+		return texts(column, column + 1)[column];
+	}
+
+	@Override
+	public String[] texts()
+	{
+		return texts(0, columns);
+	}
+
+	@Override
+	public long key(final int column)
+	{
+		if (column == 1)
+			return 0;
+		if (column == 3)
+			return status + 1;
+		if (column == 6 || column == 7) {
+			if (tpdu >= 0) {
+				// TPCI / APCI text depends on the address type and the first two TPDU bytes
+				if (column == 6)
+					return (group ? dst == 0 ? 2L : 1L : 0L) << 17 | (tpduLength > 1 ? 1 << 16 : 0)
+							| (frame[tpdu] & 0xff) << 8 | (tpduLength > 1 ? frame[tpdu + 1] & 0xff : 0);
+				// ASDU text depends on the TPDU only
+				if (tpduLength < 8)
+					return (long) tpduLength << 56 | unsigned(frame, tpdu, tpduLength);
+			}
+			else if (busmon && medium == KNXMediumSettings.MEDIUM_TP1 && frame.length - payload == 1)
+				return 1L << 60; // acknowledge frames show no TPCI / APCI and ASDU
+		}
+		return noIndex;
+	}
+
+	private String[] texts(final int from, final int to)
+	{
+		final String[] texts = new String[columns];
+		for (int c = from; c < to; c++) {
+			switch (c) {
+			case 0:
+				texts[c] = Long.toString(counter);
+				break;
+			case 1:
+				texts[c] = "";
+				break;
+			case 2:
+				texts[c] = busmon ? Long.toString(timestamp) : "";
+				break;
+			case 3:
+				texts[c] = busmon ? statusText() : "";
+				break;
+			case 4:
+				texts[c] = busmon ? toHex(frame, payload, frame.length) : toHex(frame, 0, frame.length);
+				break;
+			default:
+				decode(texts, Math.max(c, 5), to);
+				return texts;
+			}
+		}
+		return texts;
+	}
+
+	// formats the decoded frame, TPCI / APCI, and ASDU columns in [from, to)
+	private void decode(final String[] texts, final int from, final int to)
+	{
+		for (int c = from; c < to; c++)
+			texts[c] = "";
+		KNXAddress dstAddress = null;
+		byte[] tpdu = null;
+		try {
+			if (busmon) {
+				final byte[] raw = new byte[frame.length - payload];
+				System.arraycopy(frame, payload, raw, 0, raw.length);
+				final RawFrame f = RawFrameFactory.create(medium, raw, 0, false);
+				texts[5] = f.toString();
+				if (f instanceof RawFrameBase) {
+					dstAddress = ((RawFrameBase) f).getDestination();
+					tpdu = ((RawFrameBase) f).getTPDU();
+				}
+			}
+			else
+				texts[5] = CEMIFactory.create(frame, 0, frame.length).toString();
+		}
+		catch (final KNXFormatException | RuntimeException e) {
+			// same as the network monitor, show the frame without decoded raw frame
+		}
+		if (this.tpdu >= 0) {
+			tpdu = new byte[tpduLength];
+			System.arraycopy(frame, this.tpdu, tpdu, 0, tpduLength);
+			dstAddress = group ? new GroupAddress(dst) : new IndividualAddress(dst);
+		}
+		if (tpdu != null) {
+			texts[6] = DataUnitBuilder.decode(tpdu, dstAddress);
+			texts[7] = DataUnitBuilder.toHex(DataUnitBuilder.extractASDU(tpdu), " ");
+		}
+	}
+
+	private String statusText()
+	{
+		final int seq = status & 0x07;
+		if ((status & 0xf8) == 0)
+			return seq + " (no error)";
+		final StringBuilder sb = new StringBuilder().append(seq).append(" (");
+		if ((status & bitError) != 0)
+			sb.append("bit error ");
+		if ((status & frameError) != 0)
+			sb.append("frame error ");
+		if ((status & lost) != 0)
+			sb.append("lost ");
+		if ((status & parityError) != 0)
+			sb.append("parity error ");
+		if (sb.charAt(sb.length() - 1) == ' ')
+			sb.setLength(sb.length() - 1);
+		return sb.append(')').toString();
+	}
+
+	private static long unsigned(final byte[] data, final int offset, final int length)
+	{
+		long v = 0;
+		for (int i = offset; i < offset + length; i++)
+			v = v << 8 | (data[i] & 0xff);
+		return v;
+	}
+
+	private static String toHex(final byte[] data, final int from, final int to)
+	{
+		if (from >= to)
+			return "";
+		final char[] hex = new char[3 * (to - from) - 1];
+		for (int i = from, k = 0; i < to; i++) {
+			if (i > from)
+				hex[k++] = ' ';
+			hex[k++] = hexDigits[(data[i] >> 4) & 0x0f];
+			hex[k++] = hexDigits[data[i] & 0x0f];
+		}
+		return new String(hex);
+	}
+}
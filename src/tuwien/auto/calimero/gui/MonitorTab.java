@@ -36,22 +36,38 @@
 
 package tuwien.auto.calimero.gui;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.regex.Pattern;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.DirectoryDialog;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.Text;
 
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.KNXException;
-import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.KNXFormatException;
 import tuwien.auto.calimero.gui.ConnectDialog.ConnectArguments;
-import tuwien.auto.calimero.link.MonitorFrameEvent;
-import tuwien.auto.calimero.link.medium.RawFrame;
-import tuwien.auto.calimero.link.medium.RawFrameBase;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
 import tuwien.auto.calimero.tools.NetworkMonitor;
 
 /**
@@ -60,9 +76,28 @@ import tuwien.auto.calimero.tools.NetworkMonitor;
 class MonitorTab extends BaseTabLayout
 {
 	private NetworkMonitor m;
+	private CaptureReplay replay;
+	// maximum number of events kept in the event list
+	private static final int maxListItems = 1_000_000;
+
+	private static final int loadRefresh = 1000; // [ms]
+
+	private static final String[] triggerTypes = { "Address", "Service", "Regular expression on decoded frame",
+		"Repeated frames per second" };
+	private static final String[] triggerValues = { "Individual or group address", "Application layer service",
+		"Regular expression matching the decoded raw frame, TPCI / APCI, or ASDU", "Number of repeated frames" };
+
+	private static final String[] replaySpeeds = { "1x", "2x", "10x", "100x", "Max speed" };
+
 	private long eventCounter;
-	private long eventCounterFiltered = 1;
+	private final BusStatistics stats;
+	private BusStatisticsView statsView;
+	private Label load;
+	private volatile TriggerCapture trigger;
+	private Button arm;
+	// null when replaying a capture
 	private final ConnectArguments connect;
+	private final int medium;
 
 	MonitorTab(final CTabFolder tf, final ConnectArguments args)
 	{
@@ -70,7 +105,38 @@ class MonitorTab extends BaseTabLayout
 				+ (args.remote == null ? "" : " on host " + args.remote) + " on port " + args.port
 				+ (args.useNat() ? ", using NAT" : ""));
 		connect = args;
+		medium = args.knxMedium;
+		stats = new BusStatistics(medium == KNXMediumSettings.MEDIUM_TP1);
+		initList();
 
+		final String filter = args.remote == null ? args.port : args.remote;
+		addLogIncludeFilter(".*" + Pattern.quote(filter) + ".*");
+		addLogExcludeFilter(".*Discoverer.*", ".*DevMgmt.*", ".*calimero\\.mgmt\\..*");
+
+		initFilterMenu();
+		startMonitor();
+	}
+
+	/**
+	 * Creates a monitor tab replaying a capture file instead of monitoring a KNX network.
+	 *
+	 * @param tf tab folder
+	 * @param capture capture to replay, closed by this tab
+	 */
+	MonitorTab(final CTabFolder tf, final CaptureReader capture)
+	{
+		super(tf, "Replay of " + capture.file().getFileName(), "Replay capture " + capture.file());
+		connect = null;
+		medium = capture.medium();
+		stats = new BusStatistics(medium == KNXMediumSettings.MEDIUM_TP1);
+		initList();
+		initFilterMenu();
+		startReplay(capture);
+	}
+
+	private void initList()
+	{
+		enableVirtualList(maxListItems, 1);
 		final TableColumn cnt = new TableColumn(list, SWT.RIGHT);
 		cnt.setText("#");
 		cnt.setWidth(30);
@@ -96,13 +162,6 @@ class MonitorTab extends BaseTabLayout
 		asdu.setText("ASDU");
 		asdu.setWidth(50);
 		enableColumnAdjusting();
-
-		final String filter = args.remote == null ? args.port : args.remote;
-		addLogIncludeFilter(".*" + Pattern.quote(filter) + ".*");
-		addLogExcludeFilter(".*Discoverer.*", ".*DevMgmt.*", ".*calimero\\.mgmt\\..*");
-
-		initFilterMenu();
-		startMonitor();
 	}
 
 	private void startMonitor()
@@ -139,38 +198,7 @@ class MonitorTab extends BaseTabLayout
 			@Override
 			public void onIndication(final FrameEvent e)
 			{
-				final java.util.List<String> item = new ArrayList<String>();
-				// monitor event counters
-				item.add(Long.toString(++eventCounter));
-				item.add(Long.toString(eventCounterFiltered));
-				// timestamp
-				item.add(Long.toString(((CEMIBusMon) e.getFrame()).getTimestamp()));
-				final String s = e.getFrame().toString();
-				// status / sequence
-				final String status = "seq ";
-				final String rawFrame = ": ";
-				item.add(s.substring(s.indexOf(status) + status.length(), s.indexOf(rawFrame)));
-				// raw frame
-				item.add(s.substring(s.indexOf(rawFrame) + rawFrame.length()));
-				final RawFrame raw = ((MonitorFrameEvent) e).getRawFrame();
-				if (raw != null) {
-					// decoded raw frame
-					item.add(raw.toString());
-					if (raw instanceof RawFrameBase) {
-						final RawFrameBase f = (RawFrameBase) raw;
-						// tpci, apci
-						item.add(DataUnitBuilder.decode(f.getTPDU(), f.getDestination()));
-						// asdu
-						final byte[] asdu = DataUnitBuilder.extractASDU(f.getTPDU());
-						item.add(DataUnitBuilder.toHex(asdu, " "));
-					}
-				}
-				final String[] sa = item.toArray(new String[0]);
-				if (applyFilter(sa))
-					return;
-				// increment filtered counter after filter
-				++eventCounterFiltered;
-				asyncAddListItem(sa, null, null);
+				onFrame(e.getFrame().toByteArray(), System.currentTimeMillis());
 			}
 		}
 
@@ -183,11 +211,237 @@ class MonitorTab extends BaseTabLayout
 		}
 	}
 
+	private void startReplay(final CaptureReader capture)
+	{
+		final Combo speed = new Combo(top, SWT.DROP_DOWN | SWT.READ_ONLY);
+		((GridLayout) top.getLayout()).numColumns++;
+		speed.setItems(replaySpeeds);
+		speed.select(0);
+		speed.setToolTipText("Replay speed");
+		top.layout();
+
+		final String start = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(capture.startTime()));
+		asyncAddLog("Replay capture " + capture.file() + " recorded " + start);
+		replay = new CaptureReplay(capture, 1, this::onReplayedFrame);
+		speed.addSelectionListener(selected(e -> replay.setSpeed(replaySpeed(speed.getSelectionIndex()))));
+		final Thread t = new Thread(() -> {
+			try {
+				replay.replay();
+				asyncAddLog("Replay completed, " + replay.replayed() + " frames");
+			}
+			catch (final IOException e) {
+				asyncAddLog("Replay aborted with error: " + e.getMessage());
+			}
+			Main.asyncExec(() -> setHeaderInfo("Replayed capture " + capture.file()));
+		}, "Replay " + capture.file().getFileName());
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private static double replaySpeed(final int selection)
+	{
+		if (selection == replaySpeeds.length - 1)
+			return CaptureReplay.maxSpeed;
+		final String s = replaySpeeds[selection];
+		return Double.parseDouble(s.substring(0, s.length() - 1));
+	}
+
+	// replayed frames take the same decoding path as received frames, statistics use the capture time
+	private void onReplayedFrame(final CaptureReader.Record r)
+	{
+		if (r.type == CaptureWriter.cemiFrame)
+			onFrame(r.frame, r.timestamp / 1_000_000);
+	}
+
+	// current time of the bus statistics in milliseconds since the epoch, the replay clock when replaying a capture
+	private long statisticsTime()
+	{
+		return replay != null ? replay.position() / 1_000_000 : System.currentTimeMillis();
+	}
+
+	private void onFrame(final byte[] frame, final long time)
+	{
+		if (capturing())
+			captureFrame(CaptureWriter.cemiFrame, frame);
+		try {
+			final MonitorRow row = MonitorRow.decode(eventCounter + 1, frame, medium);
+			stats.add(row, time);
+			final TriggerCapture tc = trigger;
+			if (tc != null)
+				tc.add(row, frame);
+			asyncAddListRow(row);
+			eventCounter++;
+		}
+		catch (final KNXFormatException e) {
+			asyncAddLog("invalid frame " + DataUnitBuilder.toHex(frame, " ") + ": " + e.getMessage());
+		}
+	}
+
 	@Override
 	protected void initWorkAreaTop()
 	{
 		super.initWorkAreaTop();
 		addResetAndExport("_monitor.csv");
+		addCaptureButton(() -> medium);
+
+		((GridLayout) top.getLayout()).numColumns += 2;
+		load = new Label(top, SWT.NONE);
+		load.setFont(Main.font);
+		load.setToolTipText("Telegrams per second and estimated TP1 bus load of the last 10 seconds, and the number of "
+				+ "received frames not yet shown in the list");
+		final Button showStats = new Button(top, SWT.NONE);
+		showStats.setFont(Main.font);
+		showStats.setText("Statistics...");
+		showStats.setToolTipText("Show bus load, repetitions, acknowledges, and top sources and destinations");
+		showStats.addSelectionListener(selected(e -> {
+			if (statsView == null || statsView.isDisposed())
+				statsView = new BusStatisticsView(tab.getText(), stats, this::statisticsTime);
+			else
+				statsView.setActive();
+		}));
+
+		((GridLayout) top.getLayout()).numColumns++;
+		arm = new Button(top, SWT.NONE);
+		arm.setFont(Main.font);
+		arm.setText("Trigger capture...");
+		arm.setToolTipText("Capture the frames around a trigger event to a capture file");
+		arm.addSelectionListener(selected(e -> {
+			if (trigger == null)
+				showTriggerDialog();
+			else
+				disarmTrigger();
+		}));
+		Main.display.timerExec(loadRefresh, this::showLoad);
+	}
+
+	private void showTriggerDialog()
+	{
+		final Shell shell = new Shell(Main.shell, SWT.DIALOG_TRIM | SWT.APPLICATION_MODAL);
+		shell.setText("Trigger capture");
+		shell.setLayout(new GridLayout(3, false));
+		new Label(shell, SWT.NONE).setText("Trigger:");
+		final Combo type = new Combo(shell, SWT.DROP_DOWN | SWT.READ_ONLY);
+		type.setItems(triggerTypes);
+		type.select(0);
+		type.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		new Label(shell, SWT.NONE).setText("Value:");
+		final Combo value = new Combo(shell, SWT.DROP_DOWN);
+		value.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		value.setToolTipText("Individual or group address");
+		type.addSelectionListener(selected(e -> {
+			final int t = type.getSelectionIndex();
+			value.setItems(t == 1 ? Arrays.stream(TriggerCapture.services).mapToObj(DataUnitBuilder::decodeAPCI)
+					.toArray(String[]::new) : new String[0]);
+			value.setText(t == 1 ? value.getItem(2) : t == 3 ? "10" : "");
+			value.setToolTipText(triggerValues[t]);
+		}));
+
+		new Label(shell, SWT.NONE).setText("Before trigger [s]:");
+		final Spinner before = new Spinner(shell, SWT.BORDER);
+		before.setValues(10, 0, 600, 0, 1, 10);
+		before.setToolTipText("At most the last " + TriggerCapture.ringSize + " frames are kept before the trigger");
+		before.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+		new Label(shell, SWT.NONE).setText("After trigger [s]:");
+		final Spinner after = new Spinner(shell, SWT.BORDER);
+		after.setValues(10, 0, 600, 0, 1, 10);
+		after.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+		new Label(shell, SWT.NONE).setText("Keep captures:");
+		final Spinner keep = new Spinner(shell, SWT.BORDER);
+		keep.setValues(20, 1, 1000, 0, 1, 10);
+		keep.setToolTipText("Older capture files of this trigger are deleted");
+		keep.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+		new Label(shell, SWT.NONE).setText("Directory:");
+		final Text dir = new Text(shell, SWT.BORDER);
+		dir.setText(System.getProperty("user.home"));
+		dir.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		final Button browse = new Button(shell, SWT.PUSH);
+		browse.setText("...");
+		browse.addSelectionListener(selected(e -> {
+			final DirectoryDialog dlg = new DirectoryDialog(shell);
+			dlg.setFilterPath(dir.getText());
+			final String selected = dlg.open();
+			if (selected != null)
+				dir.setText(selected);
+		}));
+
+		final Button start = new Button(shell, SWT.PUSH);
+		start.setText("Arm trigger");
+		start.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 3, 1));
+		shell.setDefaultButton(start);
+		start.addSelectionListener(selected(e -> {
+			final TriggerCapture.Trigger t;
+			try {
+				t = createTrigger(type.getSelectionIndex(), value.getText().trim());
+			}
+			catch (KNXFormatException | IllegalArgumentException ex) {
+				asyncAddLog("invalid trigger: " + ex.getMessage());
+				return;
+			}
+			final Path path = Paths.get(dir.getText());
+			if (!Files.isDirectory(path)) {
+				asyncAddLog("trigger capture directory " + path + " does not exist");
+				return;
+			}
+			trigger = new TriggerCapture(path, medium, t, before.getSelection(), after.getSelection(),
+					keep.getSelection(), this::asyncAddLog);
+			shell.dispose();
+			arm.setText("Disarm trigger");
+			top.layout();
+			asyncAddLog("trigger " + t + " armed, capture " + before.getSelection() + " s before and "
+					+ after.getSelection() + " s after to " + path);
+		}));
+		shell.pack();
+		shell.setLocation(Main.shell.getLocation().x + 100, Main.shell.getLocation().y + 100);
+		shell.open();
+	}
+
+	private static TriggerCapture.Trigger createTrigger(final int type, final String value) throws KNXFormatException
+	{
+		switch (type) {
+		case 0:
+			return TriggerCapture.address(value.indexOf('/') >= 0 ? new GroupAddress(value)
+					: new IndividualAddress(value));
+		case 1:
+			for (final int service : TriggerCapture.services)
+				if (DataUnitBuilder.decodeAPCI(service).equals(value))
+					return TriggerCapture.service(service);
+			throw new IllegalArgumentException("unknown service " + value);
+		case 2:
+			return TriggerCapture.regex(Pattern.compile(value));
+		default:
+			final int repeats = Integer.parseInt(value);
+			if (repeats < 1)
+				throw new IllegalArgumentException("repeated frames " + repeats + " < 1");
+			return TriggerCapture.repeatStorm(repeats);
+		}
+	}
+
+	private void disarmTrigger()
+	{
+		final TriggerCapture tc = trigger;
+		trigger = null;
+		tc.quit();
+		arm.setText("Trigger capture...");
+		top.layout();
+		asyncAddLog("trigger " + tc + " disarmed, " + tc.captures() + " captures");
+	}
+
+	// summary of the last 10 seconds, refreshed once per second
+	private void showLoad()
+	{
+		if (load.isDisposed())
+			return;
+		final long now = statisticsTime();
+		final double telegrams = stats.sum(BusStatistics.telegrams, now, 10) / 10.0;
+		final int pending = pendingListItems();
+		load.setText(String.format("%.1f telegrams/s", telegrams)
+				+ (stats.isTp1() ? String.format(", %.0f %% load", 100 * stats.load(now, 10)) : "")
+				+ (pending > 0 ? ", " + pending + " rows pending" : ""));
+		top.layout();
+		final TriggerCapture tc = trigger;
+		if (tc != null)
+			tc.expire();
+		Main.display.timerExec(loadRefresh, this::showLoad);
 	}
 
 	@Override
@@ -195,5 +449,13 @@ class MonitorTab extends BaseTabLayout
 	{
 		if (m != null)
 			m.quit();
+		if (replay != null)
+			replay.quit();
+		if (statsView != null)
+			statsView.close();
+		final TriggerCapture tc = trigger;
+		trigger = null;
+		if (tc != null)
+			tc.quit();
 	}
 }
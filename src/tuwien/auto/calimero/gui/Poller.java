@@ -0,0 +1,269 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntToLongFunction;
+
+import tuwien.auto.calimero.KNXException;
+import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.datapoint.Datapoint;
+import tuwien.auto.calimero.process.ProcessCommunicator;
+
+/**
+ * Periodically reads datapoints, each with its own interval. A single scheduler thread checks the due reads on every
+ * tick; the first read of a datapoint is placed at a phase within its interval derived from the group address, so
+ * datapoints with equal interval do not poll in bursts. A read is skipped if a value of the group address was seen on
+ * the bus since the last read, other than the response to that read, and the total read rate is capped by a token
+ * bucket. Reads are issued by a small pool of reader threads. Polling can be suspended, e.g., while another user of
+ * the process communicator changed its response timeout; reads due meanwhile are issued once polling resumes.
+ */
+final class Poller
+{
+	// maximum number of polled reads per second
+	static final double defaultMaxRate = 5;
+
+	private static final int tick = 100; // [ms]
+	private static final int readers = 2;
+	// a value seen within this time after a read completed is taken as the response to the read
+	private static final int responseGrace = 100; // [ms]
+
+	private static final class Entry
+	{
+		final Datapoint dp;
+		final long interval;
+		long due;
+		// values seen after this time are fresh; while a read is running, no value is fresh
+		long freshAfter;
+		boolean removed;
+
+		Entry(final Datapoint dp, final long interval, final long due)
+		{
+			this.dp = dp;
+			this.interval = interval;
+			this.due = due;
+			freshAfter = due - interval;
+		}
+	}
+
+	private final ProcessCommunicator pc;
+	private final IntToLongFunction lastSeen;
+	private final Consumer<String> log;
+	private final double maxRate;
+
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService readPool;
+	private final AtomicInteger reading = new AtomicInteger();
+
+	// polled datapoints by raw group address, and ordered by due time; guarded by this
+	private final Entry[] entries = new Entry[0x10000];
+	private final PriorityQueue<Entry> queue = new PriorityQueue<>((e1, e2) -> Long.compare(e1.due, e2.due));
+	private int size;
+
+	private double tokens = 1;
+	private long lastTick;
+
+	private long reads;
+	private long skipped;
+	private boolean suspended;
+
+	/**
+	 * @param pc process communicator used for reading
+	 * @param lastSeen returns the time a value of a raw group address was last seen on the bus, in milliseconds since
+	 *        the epoch, or 0
+	 * @param maxRate maximum number of reads per second
+	 * @param log receives messages of failed reads
+	 */
+	Poller(final ProcessCommunicator pc, final IntToLongFunction lastSeen, final double maxRate,
+		final Consumer<String> log)
+	{
+		this.pc = pc;
+		this.lastSeen = lastSeen;
+		this.maxRate = maxRate;
+		this.log = log;
+		scheduler = Executors.newSingleThreadScheduledExecutor(daemon("Poller"));
+		readPool = Executors.newFixedThreadPool(readers, daemon("Poller read"));
+		lastTick = System.currentTimeMillis();
+		scheduler.scheduleAtFixedRate(this::pollDue, tick, tick, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the poll interval of a datapoint, replacing any interval set before.
+	 *
+	 * @param dp datapoint
+	 * @param interval poll interval [s], 0 to stop polling the datapoint
+	 */
+	synchronized void poll(final Datapoint dp, final int interval)
+	{
+		final int address = dp.getMainAddress().getRawAddress();
+		final Entry old = entries[address];
+		if (old != null) {
+			old.removed = true;
+			entries[address] = null;
+			size--;
+		}
+		if (interval <= 0)
+			return;
+		final long ms = interval * 1000L;
+		// golden ratio hashing spreads consecutive addresses over the interval
+		final long phase = ((address * 0x9E3779B9L) & 0xffffffffL) % ms;
+		final Entry e = new Entry(dp, ms, System.currentTimeMillis() + phase);
+		entries[address] = e;
+		queue.add(e);
+		size++;
+	}
+
+	/**
+	 * @param address raw group address
+	 * @return poll interval of the group address [s], 0 if not polled
+	 */
+	synchronized int interval(final int address)
+	{
+		final Entry e = entries[address];
+		return e == null ? 0 : (int) (e.interval / 1000);
+	}
+
+	/**
+	 * @return number of polled datapoints
+	 */
+	synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return number of reads issued
+	 */
+	synchronized long reads()
+	{
+		return reads;
+	}
+
+	/**
+	 * @return number of reads skipped because a value was seen on the bus
+	 */
+	synchronized long skipped()
+	{
+		return skipped;
+	}
+
+	/**
+	 * @param suspend <code>true</code> to stop issuing reads, <code>false</code> to resume polling
+	 */
+	synchronized void suspend(final boolean suspend)
+	{
+		suspended = suspend;
+	}
+
+	void quit()
+	{
+		scheduler.shutdownNow();
+		readPool.shutdownNow();
+	}
+
+	private synchronized void pollDue()
+	{
+		final long now = System.currentTimeMillis();
+		tokens = Math.min(1, tokens + maxRate * (now - lastTick) / 1000);
+		lastTick = now;
+		while (!suspended && !queue.isEmpty() && queue.peek().due <= now) {
+			final Entry e = queue.peek();
+			if (e.removed) {
+				queue.poll();
+				continue;
+			}
+			final long seen = lastSeen.applyAsLong(e.dp.getMainAddress().getRawAddress());
+			if (seen > e.freshAfter) {
+				// value is fresh, poll one interval after it was seen
+				queue.poll();
+				skipped++;
+				e.freshAfter = seen;
+				e.due = seen + e.interval;
+				queue.add(e);
+				continue;
+			}
+			if (tokens < 1 || reading.get() >= readers)
+				break;
+			queue.poll();
+			tokens--;
+			reads++;
+			e.freshAfter = Long.MAX_VALUE;
+			e.due = now + e.interval;
+			queue.add(e);
+			reading.incrementAndGet();
+			readPool.execute(() -> read(e));
+		}
+	}
+
+	private void read(final Entry e)
+	{
+		final Datapoint dp = e.dp;
+		try {
+			pc.read(dp);
+		}
+		catch (KNXException | KNXIllegalArgumentException ex) {
+			log.accept("poll " + dp.getMainAddress() + ": " + ex.getMessage());
+		}
+		catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			synchronized (this) {
+				e.freshAfter = System.currentTimeMillis() + responseGrace;
+			}
+			reading.decrementAndGet();
+		}
+	}
+
+	private static ThreadFactory daemon(final String name)
+	{
+		final AtomicInteger threads = new AtomicInteger();
+		return r -> {
+			final Thread t = new Thread(r, name + " " + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+}
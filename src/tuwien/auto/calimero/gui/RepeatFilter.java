@@ -0,0 +1,117 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.Arrays;
+
+/**
+ * Collapses repeated group telegrams into the list row of their first occurrence. A telegram repeats a row if it has
+ * the same source, destination, service, and ASDU, and is received within the repeat window after the last
+ * occurrence. Recent rows are kept in a small two-way set-associative table of telegram hashes; entries older than
+ * the window are evicted by overwriting them, so the table never needs cleanup.
+ * <p>
+ * Telegrams are added by a single thread, the window can be set from any thread.
+ */
+final class RepeatFilter
+{
+	// table slots, a power of 2
+	private static final int slots = 4096;
+
+	private final long[] hashes = new long[slots];
+	// time of the last occurrence, 0 for an empty slot
+	private final long[] times = new long[slots];
+	private final GroupRow[] rows = new GroupRow[slots];
+
+	private volatile long window;
+	private volatile boolean cleared;
+	private volatile long collapsed;
+
+	/**
+	 * @param window repeat window in milliseconds, 0 disables collapsing repeats
+	 */
+	void setWindow(final long window)
+	{
+		this.window = window;
+		cleared = true;
+	}
+
+	/**
+	 * @return number of telegrams collapsed into an existing row
+	 */
+	long collapsed()
+	{
+		return collapsed;
+	}
+
+	/**
+	 * Checks whether a new row repeats a recent row. If so, the repeat is counted in the recent row; otherwise, the
+	 * new row is recorded for subsequent repeats.
+	 *
+	 * @param row the new row
+	 * @param now receive time in milliseconds since the epoch
+	 * @return the repeated row, or <code>null</code> if <code>row</code> has to be shown as new list row
+	 */
+	GroupRow repeats(final GroupRow row, final long now)
+	{
+		final long window = this.window;
+		if (cleared) {
+			cleared = false;
+			Arrays.fill(times, 0);
+			Arrays.fill(rows, null);
+		}
+		if (window <= 0)
+			return null;
+
+		final long hash = row.telegramHash();
+		final int i = (int) (hash ^ hash >>> 32) * 0x9E3779B9 >>> 20 & ~1;
+		for (int k = i; k < i + 2; k++) {
+			if (hashes[k] == hash && now - times[k] <= window && rows[k].sameTelegram(row)) {
+				times[k] = now;
+				rows[k].repeated(now);
+				collapsed++;
+				return rows[k];
+			}
+		}
+		// replace the entry seen least recently, expired entries have the oldest times anyway
+		final int k = times[i] <= times[i + 1] ? i : i + 1;
+		hashes[k] = hash;
+		times[k] = now;
+		rows[k] = row;
+		return null;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+package tuwien.auto.calimero.gui;
+
+/**
+ * Bounded ring buffer with preallocated storage. Elements are addressed by their absolute sequence number; once the
+ * buffer is full, adding an element overwrites the oldest one. This class is not thread-safe.
+ *
+ * @param <T> element type
+ */
+final class RingBuffer<T>
+{
+	private final Object[] elements;
+	// sequence number of the oldest element
+	private long first;
+	// sequence number assigned to the next added element
+	private long end;
+
+	RingBuffer(final int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity " + capacity + " <= 0");
+		elements = new Object[capacity];
+	}
+
+	int capacity()
+	{
+		return elements.length;
+	}
+
+	int size()
+	{
+		return (int) (end - first);
+	}
+
+	/**
+	 * @return sequence number of the oldest element in the buffer
+	 */
+	long first()
+	{
+		return first;
+	}
+
+	/**
+	 * @return sequence number which will be assigned to the next added element
+	 */
+	long end()
+	{
+		return end;
+	}
+
+	/**
+	 * Adds an element, overwriting the oldest element if the buffer is full.
+	 *
+	 * @param e element to add
+	 * @return sequence number of the added element
+	 */
+	long add(final T e)
+	{
+		if (size() == elements.length)
+			first++;
+		elements[index(end)] = e;
+		return end++;
+	}
+
+	@SuppressWarnings("unchecked")
+	T get(final long seq)
+	{
+		if (seq < first || seq >= end)
+			throw new IndexOutOfBoundsException("sequence " + seq + " not in [" + first + ", " + end + ")");
+		return (T) elements[index(seq)];
+	}
+
+	/**
+	 * Removes the oldest element.
+	 *
+	 * @return the removed element
+	 */
+	@SuppressWarnings("unchecked")
+	T removeFirst()
+	{
+		if (first == end)
+			throw new IndexOutOfBoundsException("buffer is empty");
+		final int i = index(first++);
+		final T e = (T) elements[i];
+		elements[i] = null;
+		return e;
+	}
+
+	void clear()
+	{
+		while (first < end)
+			elements[index(first++)] = null;
+	}
+
+	private int index(final long seq)
+	{
+		return (int) (seq % elements.length);
+	}
+}
@@ -0,0 +1,212 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.KNXFormatException;
+
+/**
+ * Column-based filter for list rows, compiled from include and exclude rules. A row passes the filter if, for every
+ * filtered column, the column value matches at least one include rule of that column (if any), and no exclude rule.
+ * Instances are immutable.
+ * <p>
+ * Rule syntax: <code>value</code> matches exactly, <code>prefix*</code> matches values starting with
+ * <code>prefix</code>, <code>/regex/</code> matches a regular expression, <code>1/2/0..1/2/255</code> matches a
+ * range of KNX addresses (inclusive); a leading <code>!</code> turns a rule into an exclude rule.
+ */
+final class RowFilter
+{
+	enum Kind {
+		Exact, Prefix, Regex, Range
+	}
+
+	static final class Rule
+	{
+		final int column;
+		final boolean exclude;
+		final Kind kind;
+		final String text;
+		private final Predicate<String> test;
+
+		private Rule(final int column, final boolean exclude, final Kind kind, final String text,
+			final Predicate<String> test)
+		{
+			this.column = column;
+			this.exclude = exclude;
+			this.kind = kind;
+			this.text = text;
+			this.test = test;
+		}
+
+		@Override
+		public String toString()
+		{
+			final String s = kind == Kind.Prefix ? text + "*" : kind == Kind.Regex ? "/" + text + "/" : text;
+			return exclude ? "!" + s : s;
+		}
+	}
+
+	static final RowFilter none = new RowFilter(new Rule[0]);
+
+	private final Rule[] rules;
+	// filtered columns in ascending order
+	private final int[] columns;
+
+	private RowFilter(final Rule[] rules)
+	{
+		this.rules = rules;
+		columns = Arrays.stream(rules).mapToInt(r -> r.column).distinct().sorted().toArray();
+	}
+
+	/**
+	 * Parses a filter rule using the rule syntax of this class.
+	 *
+	 * @param column column index the rule applies to
+	 * @param expression rule expression
+	 * @return the rule
+	 * @throws IllegalArgumentException on invalid rule expression
+	 */
+	static Rule parse(final int column, final String expression)
+	{
+		final boolean exclude = expression.startsWith("!");
+		final String s = exclude ? expression.substring(1) : expression;
+		if (s.length() > 1 && s.startsWith("/") && s.endsWith("/")) {
+			final String regex = s.substring(1, s.length() - 1);
+			final Pattern p = Pattern.compile(regex);
+			return new Rule(column, exclude, Kind.Regex, regex, v -> p.matcher(v).matches());
+		}
+		final int range = s.indexOf("..");
+		if (range > 0)
+			return rangeRule(column, exclude, s.substring(0, range).trim(), s.substring(range + 2).trim());
+		if (s.endsWith("*")) {
+			final String prefix = s.substring(0, s.length() - 1);
+			return new Rule(column, exclude, Kind.Prefix, prefix, v -> v.startsWith(prefix));
+		}
+		return exact(column, exclude, s);
+	}
+
+	static Rule exact(final int column, final boolean exclude, final String value)
+	{
+		return new Rule(column, exclude, Kind.Exact, value, value::equals);
+	}
+
+	private static Rule rangeRule(final int column, final boolean exclude, final String lower, final String upper)
+	{
+		try {
+			final KNXAddress low = address(lower);
+			final KNXAddress high = address(upper);
+			if (low.getClass() != high.getClass())
+				throw new IllegalArgumentException("address range " + lower + ".." + upper + " of different types");
+			final boolean group = low instanceof GroupAddress;
+			final int from = low.getRawAddress();
+			final int to = high.getRawAddress();
+			return new Rule(column, exclude, Kind.Range, lower + ".." + upper, v -> {
+				// the address type of a value is defined by its separator
+				if (v.indexOf('/') > 0 != group)
+					return false;
+				try {
+					final int raw = address(v).getRawAddress();
+					return raw >= from && raw <= to;
+				}
+				catch (final KNXFormatException e) {
+					return false;
+				}
+			});
+		}
+		catch (final KNXFormatException e) {
+			throw new IllegalArgumentException("invalid address range " + lower + ".." + upper, e);
+		}
+	}
+
+	private static KNXAddress address(final String s) throws KNXFormatException
+	{
+		return s.indexOf('/') > 0 ? new GroupAddress(s) : new IndividualAddress(s);
+	}
+
+	RowFilter with(final Rule rule)
+	{
+		final Rule[] copy = Arrays.copyOf(rules, rules.length + 1);
+		copy[rules.length] = rule;
+		return new RowFilter(copy);
+	}
+
+	boolean isEmpty()
+	{
+		return rules.length == 0;
+	}
+
+	/**
+	 * @return the indices of all columns with filter rules, in ascending order
+	 */
+	int[] columns()
+	{
+		return columns.clone();
+	}
+
+	/**
+	 * Tests a single column value against the rules of its column.
+	 *
+	 * @param column column index
+	 * @param value column value
+	 * @return <code>true</code> if the value passes all rules of that column, <code>false</code> otherwise
+	 */
+	boolean test(final int column, final String value)
+	{
+		boolean hasInclude = false;
+		boolean included = false;
+		for (final Rule r : rules) {
+			if (r.column != column)
+				continue;
+			if (r.exclude) {
+				if (r.test.test(value))
+					return false;
+			}
+			else if (!included) {
+				hasInclude = true;
+				included = r.test.test(value);
+			}
+		}
+		return included || !hasInclude;
+	}
+}
@@ -0,0 +1,488 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded store of list rows with a filtered view. Rows are kept in a ring, the oldest rows are discarded first.
+ * Columns with few distinct values (addresses, services) are indexed by value, so filter rules are evaluated once
+ * per distinct value instead of once per row. The filtered view holds the sequence numbers of all rows passing the
+ * current filter. The column text of recently shown rows is kept in a small LRU cache.
+ * <p>
+ * Rows are added and the view is accessed from the GUI thread only. To filter the stored rows on another thread,
+ * the GUI thread takes a {@link Snapshot} of the rows, which {@link #select(RowFilter, Snapshot)} filters on any
+ * thread.
+ */
+final class RowStore
+{
+	// columns with more distinct values are not indexed (e.g., counters and timestamps)
+	private static final int maxDistinctValues = 4096;
+	// formatted rows kept, in the order of a few screens of list items
+	private static final int maxFormattedRows = 512;
+
+	/**
+	 * List row of plain column text.
+	 */
+	static final class TextRow implements ListRow
+	{
+		private final String[] values;
+
+		TextRow(final String[] values)
+		{
+			this.values = values;
+		}
+
+		@Override
+		public int columns()
+		{
+			return values.length;
+		}
+
+		@Override
+		public String text(final int column)
+		{
+			final String s = values[column];
+			return s == null ? "" : s;
+		}
+
+		@Override
+		public String[] texts()
+		{
+			return values;
+		}
+	}
+
+	private static final class ColumnIndex
+	{
+		private static final long empty = Long.MIN_VALUE;
+
+		// distinct values are identified either by their text, or by the value key provided by the row
+		private final Map<String, Integer> ids = new HashMap<>();
+		// open addressing table of value keys and their ids, allocated on first use
+		private long[] keys;
+		private int[] keyIds;
+		// values by id, only appended to
+		private String[] values = new String[64];
+		private int size;
+		// value id of each stored row, indexed like the row data; null if the column is not indexed
+		private int[] rowIds;
+
+		ColumnIndex(final int capacity)
+		{
+			rowIds = new int[capacity];
+		}
+
+		// copy of the row value ids and the values assigned so far, the lookup tables are not copied
+		ColumnIndex(final ColumnIndex index)
+		{
+			values = Arrays.copyOf(index.values, index.size);
+			size = index.size;
+			rowIds = index.rowIds != null ? index.rowIds.clone() : null;
+		}
+
+		// records the value id of a row column, values of text rows are replaced by their canonical instance
+		void add(final ListRow row, final int column, final int slot)
+		{
+			if (rowIds == null)
+				return;
+			final long key = column < row.columns() ? row.key(column) : ListRow.textKey;
+			int id = -1;
+			if (key == ListRow.textKey) {
+				final String value = column < row.columns() ? row.text(column) : "";
+				id = textId(value);
+				if (id >= 0 && row instanceof TextRow && column < row.columns())
+					((TextRow) row).values[column] = values[id];
+			}
+			else if (key >= 0)
+				id = keyId(key, row, column);
+			if (id < 0) {
+				rowIds = null;
+				ids.clear();
+				keys = null;
+				keyIds = null;
+				return;
+			}
+			rowIds[slot] = id;
+		}
+
+		private int textId(final String value)
+		{
+			final Integer id = ids.get(value);
+			if (id != null)
+				return id;
+			final int added = newId(value);
+			if (added >= 0)
+				ids.put(value, added);
+			return added;
+		}
+
+		private int keyId(final long key, final ListRow row, final int column)
+		{
+			if (keys == null) {
+				keys = new long[2 * maxDistinctValues];
+				Arrays.fill(keys, empty);
+				keyIds = new int[keys.length];
+			}
+			final int mask = keys.length - 1;
+			int i = (int) (key ^ key >>> 32) * 0x9E3779B9 & mask;
+			while (keys[i] != empty) {
+				if (keys[i] == key)
+					return keyIds[i];
+				i = (i + 1) & mask;
+			}
+			// the column text of a key is formatted once
+			final int id = newId(row.text(column));
+			if (id >= 0) {
+				keys[i] = key;
+				keyIds[i] = id;
+			}
+			return id;
+		}
+
+		private int newId(final String value)
+		{
+			if (size == maxDistinctValues)
+				return -1;
+			if (size == values.length)
+				values = Arrays.copyOf(values, 2 * size);
+			values[size] = value;
+			return size++;
+		}
+	}
+
+	/**
+	 * Copy of the stored rows and the column indices used by a filter, for filtering on threads other than the GUI
+	 * thread while rows are added.
+	 */
+	static final class Snapshot
+	{
+		private final ListRow[] data;
+		private final ColumnIndex[] index;
+		private final long to;
+
+		private Snapshot(final ListRow[] data, final ColumnIndex[] index, final long to)
+		{
+			this.data = data;
+			this.index = index;
+			this.to = to;
+		}
+
+		/**
+		 * @return sequence number following the last row of the snapshot
+		 */
+		long end()
+		{
+			return to;
+		}
+	}
+
+	// evaluates a filter against stored rows, memorizing the result for each indexed column value
+	private final class Matcher
+	{
+		private final RowFilter filter;
+		private final int[] columns;
+		// 0: not evaluated yet, 1: value passes, 2: value is filtered out
+		private final byte[][] verdicts;
+		// rows matched, null for the rows of this store
+		private final Snapshot snapshot;
+
+		Matcher(final RowFilter filter, final Snapshot snapshot)
+		{
+			this.filter = filter;
+			this.snapshot = snapshot;
+			columns = filter.columns();
+			verdicts = new byte[columns.length][];
+			Arrays.fill(verdicts, new byte[0]);
+		}
+
+		boolean test(final long seq)
+		{
+			final int slot = slot(seq);
+			final ColumnIndex[] index = snapshot != null ? snapshot.index : RowStore.this.index;
+			final ListRow[] data = snapshot != null ? snapshot.data : RowStore.this.data;
+			for (int i = 0; i < columns.length; i++) {
+				final int c = columns[i];
+				final int[] ids = c < index.length ? index[c].rowIds : null;
+				if (ids != null) {
+					final int id = ids[slot];
+					if (id >= verdicts[i].length)
+						verdicts[i] = Arrays.copyOf(verdicts[i], Math.max(id + 1, 2 * verdicts[i].length));
+					if (verdicts[i][id] == 0)
+						verdicts[i][id] = (byte) (filter.test(c, index[c].values[id]) ? 1 : 2);
+					if (verdicts[i][id] == 2)
+						return false;
+				}
+				else {
+					final ListRow row = data[slot];
+					if (!filter.test(c, c < row.columns() ? row.text(c) : ""))
+						return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final ListRow[] data;
+	// sequence number of the oldest row, and the sequence number assigned to the next added row
+	private long first;
+	private long end;
+	private ColumnIndex[] index = new ColumnIndex[0];
+
+	// filtered view, a ring of row sequence numbers addressed by view position; null if no filter is set
+	private long[] view;
+	private long viewFirst;
+	private long viewEnd;
+	private Matcher matcher;
+
+	// recently formatted rows in access order, used by the GUI thread only
+	private final Map<ListRow, String[]> formatted = new LinkedHashMap<ListRow, String[]>(2 * maxFormattedRows, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<ListRow, String[]> eldest)
+		{
+			return size() > maxFormattedRows;
+		}
+	};
+
+	RowStore(final int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity " + capacity + " <= 0");
+		data = new ListRow[capacity];
+	}
+
+	/**
+	 * Adds a row, overwriting the oldest row if the store is full. Values of indexed columns of text rows are
+	 * replaced by their canonical instance.
+	 *
+	 * @param row the row
+	 */
+	void add(final ListRow row)
+	{
+		final int columns = row.columns();
+		if (columns > index.length) {
+			final ColumnIndex[] grown = Arrays.copyOf(index, columns);
+			// rows added before only have empty values in the new columns
+			for (int c = index.length; c < columns; c++) {
+				grown[c] = new ColumnIndex(data.length);
+				for (long seq = first; seq < end; seq++)
+					grown[c].add(data[slot(seq)], c, slot(seq));
+			}
+			index = grown;
+		}
+		if (end - first == data.length)
+			first++;
+		final int slot = slot(end);
+		for (int c = 0; c < index.length; c++) {
+			final ColumnIndex ci = index[c];
+			if (ci.rowIds != null)
+				ci.add(row, c, slot);
+		}
+		data[slot] = row;
+		final long seq = end++;
+
+		if (view != null) {
+			while (viewFirst < viewEnd && view[viewSlot(viewFirst)] < first)
+				viewFirst++;
+			if (matcher.test(seq))
+				view[viewSlot(viewEnd++)] = seq;
+		}
+	}
+
+	/**
+	 * Copies the stored rows and the column indices used by a filter, other columns are left out of the snapshot;
+	 * this method must be invoked from the GUI thread only.
+	 *
+	 * @param filter row filter
+	 * @return the snapshot
+	 */
+	Snapshot snapshot(final RowFilter filter)
+	{
+		final ColumnIndex[] copy = new ColumnIndex[index.length];
+		for (final int c : filter.columns())
+			if (c < index.length)
+				copy[c] = new ColumnIndex(index[c]);
+		return new Snapshot(data.clone(), copy, end);
+	}
+
+	/**
+	 * Selects the rows of a snapshot passing a filter; this method can be invoked from any thread.
+	 *
+	 * @param filter row filter
+	 * @param snapshot rows to filter, taken by {@link #snapshot(RowFilter)}
+	 * @return the sequence numbers of the selected rows, in ascending order
+	 */
+	long[] select(final RowFilter filter, final Snapshot snapshot)
+	{
+		final Matcher m = new Matcher(filter, snapshot);
+		final long to = snapshot.to;
+		long[] selected = new long[1024];
+		int size = 0;
+		for (long seq = Math.max(0, to - data.length); seq < to; seq++) {
+			if (m.test(seq)) {
+				if (size == selected.length)
+					selected = Arrays.copyOf(selected, 2 * size);
+				selected[size++] = seq;
+			}
+		}
+		return Arrays.copyOf(selected, size);
+	}
+
+	/**
+	 * @return the sequence number assigned to the next added row
+	 */
+	long end()
+	{
+		return end;
+	}
+
+	/**
+	 * Sets the filter of the view.
+	 *
+	 * @param filter row filter, an empty filter shows all rows
+	 * @param selected rows selected by <code>filter</code> up to <code>to</code>, see
+	 *        {@link #select(RowFilter, Snapshot)}
+	 * @param to end of the selected rows (exclusive), rows added afterwards are filtered by this method
+	 */
+	void setFilter(final RowFilter filter, final long[] selected, final long to)
+	{
+		if (filter.isEmpty()) {
+			view = null;
+			matcher = null;
+			return;
+		}
+		if (view == null)
+			view = new long[data.length];
+		viewFirst = 0;
+		viewEnd = 0;
+		matcher = new Matcher(filter, null);
+		for (final long seq : selected)
+			if (seq >= first)
+				view[viewSlot(viewEnd++)] = seq;
+		for (long seq = Math.max(to, first); seq < end; seq++)
+			if (matcher.test(seq))
+				view[viewSlot(viewEnd++)] = seq;
+	}
+
+	/**
+	 * @return number of rows in the view
+	 */
+	int size()
+	{
+		return (int) (view == null ? end - first : viewEnd - viewFirst);
+	}
+
+	/**
+	 * @return view position of the first row in the view, increases as rows are discarded
+	 */
+	long firstPosition()
+	{
+		return view == null ? first : viewFirst;
+	}
+
+	/**
+	 * @param index index into the view
+	 * @return the row
+	 */
+	ListRow row(final int index)
+	{
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("index " + index + " not in [0, " + size() + ")");
+		return data[slot(view == null ? first + index : view[viewSlot(viewFirst + index)])];
+	}
+
+	/**
+	 * Returns the column text of a row in the view, formatting the row only if it is not among the recently
+	 * formatted rows. The returned array must not be modified.
+	 *
+	 * @param index index into the view
+	 * @return column texts
+	 */
+	String[] texts(final int index)
+	{
+		final ListRow row = row(index);
+		if (row instanceof TextRow)
+			return row.texts();
+		return formatted.computeIfAbsent(row, ListRow::texts);
+	}
+
+	/**
+	 * Discards the formatted column text of a row, for rows whose content changed after they were added.
+	 *
+	 * @param row the changed row
+	 */
+	void invalidate(final ListRow row)
+	{
+		formatted.remove(row);
+	}
+
+	/**
+	 * Copies rows of the view, skipping rows already discarded.
+	 *
+	 * @param from view position of the first row to copy
+	 * @param to view position following the last row to copy
+	 * @param dst destination of the copied rows, at most <code>dst.length</code> rows are copied
+	 * @return view position of the first copied row; the number of copied rows is
+	 *         <code>min(dst.length, to - position)</code>, or 0 if the returned position is <code>&ge; to</code>
+	 */
+	long copyRows(final long from, final long to, final ListRow[] dst)
+	{
+		final long start = Math.max(from, firstPosition());
+		final int n = (int) Math.max(0, Math.min(dst.length, to - start));
+		final int offset = (int) (start - firstPosition());
+		for (int i = 0; i < n; i++)
+			dst[i] = row(offset + i);
+		return start;
+	}
+
+	private int slot(final long seq)
+	{
+		return (int) (seq % data.length);
+	}
+
+	private int viewSlot(final long position)
+	{
+		return (int) (position % view.length);
+	}
+}
@@ -0,0 +1,234 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.datapoint.Datapoint;
+
+/**
+ * Outgoing queue of group write telegrams, sent by a single sender thread at a limited rate. Queued writes are sent in
+ * order of their KNX priority class (system, urgent, normal, low), and in order of queuing within a class. A write to a
+ * group address which still has a queued write replaces the queued value, so only the latest value is sent if the
+ * queue backs up. The rate is limited by a token bucket. A write which fails is logged and dropped, and the sender
+ * continues with the next write.
+ */
+final class TelegramQueue
+{
+	// a TP1 line transmits about 50 telegrams per second at 9600 bit/s
+	static final int defaultRate = 20;
+	private static final int burst = 5;
+
+	private static final class Write
+	{
+		final Datapoint dp;
+		String value;
+
+		Write(final Datapoint dp, final String value)
+		{
+			this.dp = dp;
+			this.value = value;
+		}
+	}
+
+	private final BiConsumer<Datapoint, String> sender;
+	private final Consumer<String> log;
+	private final Thread thread;
+
+	// queued writes by priority class, and by raw group address; guarded by this
+	private final List<ArrayDeque<Write>> queues = new ArrayList<>();
+	private final Write[] queued = new Write[0x10000];
+	private int depth;
+
+	private double rate;
+	private double tokens = burst;
+	private long lastRefill = System.nanoTime();
+
+	private long sent;
+	private long coalesced;
+	private int maxDepth;
+	private volatile boolean quit;
+
+	/**
+	 * Creates the queue and starts its sender thread.
+	 *
+	 * @param sender sends a group write of a datapoint value, invoked from the sender thread
+	 * @param rate maximum number of telegrams per second
+	 * @param log logs a write which failed, invoked from the sender thread
+	 */
+	TelegramQueue(final BiConsumer<Datapoint, String> sender, final double rate, final Consumer<String> log)
+	{
+		this.sender = sender;
+		this.log = log;
+		this.rate = rate;
+		for (int i = 0; i < 4; i++)
+			queues.add(new ArrayDeque<>());
+		thread = new Thread(this::send, "Telegram queue");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a group write, or replaces the value of a write to the same group address still queued.
+	 *
+	 * @param dp datapoint
+	 * @param value value to write
+	 */
+	synchronized void write(final Datapoint dp, final String value)
+	{
+		final int address = dp.getMainAddress().getRawAddress();
+		final Write w = queued[address];
+		if (w != null) {
+			w.value = value;
+			coalesced++;
+			return;
+		}
+		final Write add = new Write(dp, value);
+		queued[address] = add;
+		queues.get(priorityClass(dp.getPriority())).add(add);
+		depth++;
+		maxDepth = Math.max(maxDepth, depth);
+		notifyAll();
+	}
+
+	synchronized void setRate(final double rate)
+	{
+		this.rate = rate;
+		notifyAll();
+	}
+
+	/**
+	 * @return number of queued writes
+	 */
+	synchronized int depth()
+	{
+		return depth;
+	}
+
+	/**
+	 * @return maximum number of queued writes so far
+	 */
+	synchronized int maxDepth()
+	{
+		return maxDepth;
+	}
+
+	/**
+	 * @return number of writes sent
+	 */
+	synchronized long sent()
+	{
+		return sent;
+	}
+
+	/**
+	 * @return number of writes replaced by a later write to the same group address before being sent
+	 */
+	synchronized long coalesced()
+	{
+		return coalesced;
+	}
+
+	void quit()
+	{
+		quit = true;
+		thread.interrupt();
+	}
+
+	private void send()
+	{
+		try {
+			while (!quit) {
+				// the value is no longer replaced once the write is removed from the queue
+				final Write w = next();
+				try {
+					sender.accept(w.dp, w.value);
+				}
+				catch (final RuntimeException e) {
+					log.accept("writing " + w.value + " to " + w.dp.getMainAddress() + ": " + e);
+				}
+			}
+		}
+		catch (final InterruptedException e) {}
+	}
+
+	// waits for a queued write and a token, and removes the write from the queue
+	private synchronized Write next() throws InterruptedException
+	{
+		while (true) {
+			if (depth == 0) {
+				wait();
+				continue;
+			}
+			final long now = System.nanoTime();
+			tokens = Math.min(burst, tokens + rate * (now - lastRefill) / 1e9);
+			lastRefill = now;
+			if (tokens < 1) {
+				final long waitNanos = (long) ((1 - tokens) / rate * 1e9);
+				wait(Math.max(1, waitNanos / 1_000_000));
+				continue;
+			}
+			for (final ArrayDeque<Write> q : queues) {
+				final Write w = q.poll();
+				if (w != null) {
+					tokens--;
+					depth--;
+					sent++;
+					queued[w.dp.getMainAddress().getRawAddress()] = null;
+					return w;
+				}
+			}
+		}
+	}
+
+	private static int priorityClass(final Priority p)
+	{
+		if (p == Priority.SYSTEM)
+			return 0;
+		if (p == Priority.URGENT)
+			return 1;
+		if (p == Priority.NORMAL)
+			return 2;
+		return 3;
+	}
+}
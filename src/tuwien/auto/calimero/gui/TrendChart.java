@@ -0,0 +1,533 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Window plotting the numeric values of a group address over time, read from the value history. The samples of the
+ * visible time range are downsampled with {@link Lttb}, so a chart draws at most a few thousand points regardless of
+ * the number of stored values. Samples already loaded are kept; zooming and panning only query the history for the
+ * time ranges not loaded yet. Queries run on a worker thread, at most one at a time; the chart is redrawn with the
+ * loaded samples once a query completes. The mouse wheel zooms around the cursor, dragging pans the chart.
+ */
+final class TrendChart
+{
+	private static final int refreshInterval = 1000; // [ms]
+	// values appended within this time might not be visible to a query yet, they are loaded with the next refresh
+	private static final long settleTime = 1000; // [ms]
+	private static final int maxPoints = 2000;
+	// loaded samples are trimmed to the visible range beyond this limit
+	private static final int maxSamples = 4_000_000;
+	private static final long minSpan = 10_000; // [ms]
+	private static final long maxSpan = 10 * 366 * 86_400_000L;
+	// the history is queried in slices of this time range [ms]
+	private static final long querySlice = 86_400_000;
+	// minimum delay between loading samples [ms], coalescing the loads requested while zooming or panning
+	private static final int loadDelay = 100;
+
+	private static final int left = 70;
+	private static final int right = 15;
+	private static final int top = 10;
+	private static final int bottom = 25;
+
+	private static final DateTimeFormatter time = DateTimeFormatter.ofPattern("HH:mm:ss")
+			.withZone(ZoneId.systemDefault());
+	private static final DateTimeFormatter date = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+			.withZone(ZoneId.systemDefault());
+
+	/**
+	 * Numeric samples of a group address, loaded from the value history for a contiguous time range.
+	 */
+	static final class Samples
+	{
+		long[] times = new long[1024];
+		double[] values = new double[1024];
+		int size;
+		// loaded time range, empty if from > to
+		long from = 0;
+		long to = -1;
+
+		/**
+		 * @return <code>true</code> if the loaded time range contains <code>[from, to]</code>
+		 */
+		boolean covers(final long from, final long to)
+		{
+			return from > to || this.from <= from && to <= this.to;
+		}
+
+		/**
+		 * @return <code>true</code> if <code>[from, to]</code> neither overlaps nor adjoins the loaded time range
+		 */
+		boolean disjoint(final long from, final long to)
+		{
+			return this.from > this.to || to < this.from - 1 || from > this.to + 1;
+		}
+
+		/**
+		 * Queries the numeric values of a time range and adds them, the time range has to follow the samples added
+		 * before. The history is queried in slices of time, so appending to the history is not blocked for the
+		 * whole query.
+		 *
+		 * @return number of queried values
+		 */
+		int query(final ValueHistory history, final int address, final DptTranslator translator, final long from,
+			final long to)
+		{
+			int queried = 0;
+			for (long t = from; t <= to; t += querySlice)
+				queried += history.query(address, t, Math.min(to, t + querySlice - 1),
+						(time, asdu) -> add(time, translator.numeric(asdu)));
+			return queried;
+		}
+
+		void replace(final Samples loaded, final long from, final long to)
+		{
+			times = loaded.times;
+			values = loaded.values;
+			size = loaded.size;
+			this.from = from;
+			this.to = to;
+		}
+
+		void prepend(final Samples head, final long from)
+		{
+			if (head.size > 0) {
+				final int n = head.size + size;
+				final long[] t = Arrays.copyOf(head.times, Math.max(n, times.length));
+				final double[] v = Arrays.copyOf(head.values, t.length);
+				System.arraycopy(times, 0, t, head.size, size);
+				System.arraycopy(values, 0, v, head.size, size);
+				times = t;
+				values = v;
+				size = n;
+			}
+			this.from = from;
+		}
+
+		void append(final Samples tail, final long to)
+		{
+			for (int i = 0; i < tail.size; i++)
+				add(tail.times[i], tail.values[i]);
+			this.to = to;
+		}
+
+		/**
+		 * Drops the samples outside a time range.
+		 */
+		void trim(final long from, final long to)
+		{
+			final int lo = lowerBound(from);
+			final int hi = lowerBound(to + 1);
+			System.arraycopy(times, lo, times, 0, hi - lo);
+			System.arraycopy(values, lo, values, 0, hi - lo);
+			size = hi - lo;
+			this.from = Math.max(this.from, from);
+			this.to = Math.min(this.to, to);
+		}
+
+		void clear()
+		{
+			size = 0;
+			from = 0;
+			to = -1;
+		}
+
+		/**
+		 * @return index of the first sample with a time equal to or later than <code>t</code>
+		 */
+		int lowerBound(final long t)
+		{
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				final int mid = (low + high) >>> 1;
+				if (times[mid] < t)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+
+		private void add(final long t, final double v)
+		{
+			if (Double.isNaN(v))
+				return;
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			times[size] = t;
+			values[size++] = v;
+		}
+	}
+
+	private final Supplier<ValueHistory> history;
+	private final int address;
+	private final DptTranslator translator;
+	private final String unit;
+
+	private final Shell shell;
+	private final Canvas canvas;
+	private final Label status;
+
+	private final Samples samples = new Samples();
+	private long viewFrom;
+	private long viewTo;
+	// the view end follows the current time
+	private boolean follow = true;
+
+	// downsampled samples of the view, as indices into samples
+	private final int[] selected = new int[maxPoints];
+	private int points;
+	private int inView;
+
+	// used by the GUI thread only
+	private boolean loading;
+	private boolean loadScheduled;
+	// incremented whenever the loaded samples are replaced, a query started before is discarded
+	private int loadGeneration;
+	private String lastLoad = "";
+
+	private int dragX = -1;
+	private long dragFrom;
+
+	TrendChart(final String title, final Supplier<ValueHistory> history, final int address,
+		final DptTranslator translator, final String unit)
+	{
+		this.history = history;
+		this.address = address;
+		this.translator = translator;
+		this.unit = unit == null ? "" : unit;
+
+		shell = new Shell(Main.shell, SWT.DIALOG_TRIM | SWT.RESIZE);
+		shell.setText("Trend - " + title);
+		shell.setLayout(new GridLayout(6, false));
+
+		span(shell, "1 h", 3_600_000L);
+		span(shell, "1 d", 86_400_000L);
+		span(shell, "7 d", 7 * 86_400_000L);
+		final Button all = new Button(shell, SWT.NONE);
+		all.setText("All");
+		all.setToolTipText("Show all stored values");
+		all.addListener(SWT.Selection, e -> {
+			final ValueHistory h = history.get();
+			final long first = h != null ? h.firstTime(address) : -1;
+			final long now = System.currentTimeMillis();
+			show(first >= 0 ? Math.max(first, now - maxSpan) : now - 3_600_000L, now);
+		});
+		status = new Label(shell, SWT.NONE);
+		status.setFont(Main.font);
+		status.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		final Button close = new Button(shell, SWT.NONE);
+		close.setText("Close");
+		close.addListener(SWT.Selection, e -> shell.dispose());
+
+		canvas = new Canvas(shell, SWT.BORDER | SWT.DOUBLE_BUFFERED);
+		canvas.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 6, 1));
+		canvas.setBackground(Main.display.getSystemColor(SWT.COLOR_LIST_BACKGROUND));
+		canvas.setFont(Main.font);
+		canvas.addListener(SWT.Paint, e -> paint(e.gc));
+		canvas.addListener(SWT.Resize, e -> update());
+		canvas.addListener(SWT.MouseWheel, this::zoom);
+		canvas.addListener(SWT.MouseDown, e -> {
+			dragX = e.x;
+			dragFrom = viewFrom;
+		});
+		canvas.addListener(SWT.MouseMove, this::pan);
+		canvas.addListener(SWT.MouseUp, e -> dragX = -1);
+
+		final long now = System.currentTimeMillis();
+		viewFrom = now - 3_600_000L;
+		viewTo = now;
+		shell.setSize(800, 450);
+		shell.setLocation(Main.shell.getLocation().x + 100, Main.shell.getLocation().y + 100);
+		shell.open();
+		update();
+		Main.display.timerExec(refreshInterval, this::scheduledRefresh);
+	}
+
+	void close()
+	{
+		if (!shell.isDisposed())
+			shell.dispose();
+	}
+
+	boolean isDisposed()
+	{
+		return shell.isDisposed();
+	}
+
+	private void span(final Shell parent, final String text, final long span)
+	{
+		final Button b = new Button(parent, SWT.NONE);
+		b.setText(text);
+		b.setToolTipText("Show the last " + text);
+		b.addListener(SWT.Selection, e -> {
+			final long now = System.currentTimeMillis();
+			show(now - span, now);
+		});
+	}
+
+	private void show(final long from, final long to)
+	{
+		final long span = Math.max(minSpan, Math.min(maxSpan, to - from));
+		viewTo = to;
+		viewFrom = to - span;
+		follow = viewTo >= System.currentTimeMillis() - settleTime;
+		update();
+	}
+
+	private void zoom(final Event e)
+	{
+		final Rectangle plot = plotArea();
+		if (plot.width <= 0 || e.count == 0)
+			return;
+		final double factor = e.count > 0 ? 0.8 : 1.25;
+		final double x = Math.max(0, Math.min(1, (double) (e.x - plot.x) / plot.width));
+		final long span = viewTo - viewFrom;
+		final long anchor = viewFrom + (long) (x * span);
+		final long zoomed = Math.max(minSpan, Math.min(maxSpan, (long) (span * factor)));
+		final long from = anchor - (long) (x * zoomed);
+		show(from, from + zoomed);
+	}
+
+	private void pan(final Event e)
+	{
+		final Rectangle plot = plotArea();
+		if (dragX < 0 || plot.width <= 0)
+			return;
+		final long span = viewTo - viewFrom;
+		final long from = dragFrom - (long) ((double) (e.x - dragX) / plot.width * span);
+		show(from, from + span);
+	}
+
+	private void scheduledRefresh()
+	{
+		if (shell.isDisposed())
+			return;
+		if (follow) {
+			final long span = viewTo - viewFrom;
+			viewTo = System.currentTimeMillis();
+			viewFrom = viewTo - span;
+			update();
+		}
+		Main.display.timerExec(refreshInterval, this::scheduledRefresh);
+	}
+
+	// downsamples the loaded samples of the view, and schedules loading the samples missing for the view
+	private void update()
+	{
+		if (shell.isDisposed())
+			return;
+		if (history.get() == null) {
+			samples.clear();
+			loadGeneration++;
+			points = 0;
+			inView = 0;
+			status.setText("Group value history is not kept");
+			canvas.redraw();
+			return;
+		}
+
+		// include the samples next to the view, so the plot reaches its borders
+		final int lo = Math.max(0, samples.lowerBound(viewFrom) - 1);
+		final int hi = Math.min(samples.size, samples.lowerBound(viewTo + 1) + 1);
+		inView = hi - lo;
+		final int threshold = Math.max(3, Math.min(maxPoints, 2 * plotArea().width));
+		points = Lttb.downsample(samples.times, samples.values, lo, hi, threshold, selected);
+
+		final boolean complete = samples.covers(viewFrom, loadableEnd());
+		if (!complete && !loading && !loadScheduled) {
+			loadScheduled = true;
+			Main.display.timerExec(loadDelay, this::load);
+		}
+		status.setText(inView + " values, " + points + " drawn" + (complete ? lastLoad : ", loading ..."));
+		canvas.redraw();
+	}
+
+	private long loadableEnd()
+	{
+		return Math.min(viewTo, System.currentTimeMillis() - settleTime);
+	}
+
+	// queries the samples missing for the view on a worker thread, and merges them on the GUI thread
+	private void load()
+	{
+		loadScheduled = false;
+		final ValueHistory h = history.get();
+		if (shell.isDisposed() || loading || h == null)
+			return;
+		final long from = viewFrom;
+		final long to = loadableEnd();
+		if (samples.covers(from, to))
+			return;
+
+		final boolean replace = samples.disjoint(from, to);
+		final long headTo = replace ? to : samples.from - 1;
+		final long tailFrom = replace ? to + 1 : samples.to + 1;
+		final int generation = loadGeneration;
+		loading = true;
+		final Thread t = new Thread(() -> {
+			final long start = System.nanoTime();
+			final Samples head = new Samples();
+			final Samples tail = new Samples();
+			int queried = 0;
+			String error = null;
+			try {
+				queried += head.query(h, address, translator, from, headTo);
+				queried += tail.query(h, address, translator, tailFrom, to);
+			}
+			catch (final RuntimeException e) {
+				// the time range counts as loaded, so a failing query is not repeated for the same view
+				error = ", query failed: " + e;
+			}
+			final int n = queried;
+			final String failed = error;
+			final long ms = (System.nanoTime() - start) / 1_000_000;
+			Main.asyncExec(() -> {
+				loading = false;
+				if (shell.isDisposed())
+					return;
+				if (generation == loadGeneration) {
+					if (replace)
+						samples.replace(head, from, to);
+					else {
+						if (from <= headTo)
+							samples.prepend(head, from);
+						if (tailFrom <= to)
+							samples.append(tail, to);
+					}
+					if (samples.size > maxSamples) {
+						samples.trim(viewFrom, loadableEnd());
+						loadGeneration++;
+					}
+					lastLoad = failed != null ? failed : n > 0 ? ", " + n + " queried in " + ms + " ms" : "";
+				}
+				update();
+			});
+		}, "Trend query");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private Rectangle plotArea()
+	{
+		final Rectangle r = canvas.getClientArea();
+		return new Rectangle(r.x + left, r.y + top, Math.max(0, r.width - left - right),
+				Math.max(0, r.height - top - bottom));
+	}
+
+	private void paint(final GC gc)
+	{
+		final Rectangle plot = plotArea();
+		if (plot.width <= 0 || plot.height <= 0)
+			return;
+		gc.setForeground(Main.display.getSystemColor(SWT.COLOR_DARK_GRAY));
+		gc.drawRectangle(plot);
+
+		final DateTimeFormatter format = viewTo - viewFrom > 86_400_000L ? date : time;
+		final int textHeight = gc.getFontMetrics().getHeight();
+		final int y = plot.y + plot.height + 3;
+		gc.drawString(format.format(Instant.ofEpochMilli(viewFrom)), plot.x, y, true);
+		final String end = format.format(Instant.ofEpochMilli(viewTo));
+		gc.drawString(end, plot.x + plot.width - gc.textExtent(end).x, y, true);
+		if (points == 0) {
+			final String s = "No numeric values in this time range";
+			final Point extent = gc.textExtent(s);
+			gc.drawString(s, plot.x + (plot.width - extent.x) / 2, plot.y + (plot.height - extent.y) / 2, true);
+			return;
+		}
+
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+		for (int i = 0; i < points; i++) {
+			final double v = samples.values[selected[i]];
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+		}
+		if (max - min < 1e-9) {
+			min -= 1;
+			max += 1;
+		}
+		final String high = format(max);
+		final String low = format(min);
+		gc.drawString(high, plot.x - gc.textExtent(high).x - 4, plot.y, true);
+		gc.drawString(low, plot.x - gc.textExtent(low).x - 4, plot.y + plot.height - textHeight, true);
+
+		final double span = viewTo - viewFrom;
+		final double range = max - min;
+		final int[] line = new int[2 * points];
+		for (int i = 0; i < points; i++) {
+			final int k = selected[i];
+			line[2 * i] = plot.x + (int) Math.round((samples.times[k] - viewFrom) / span * plot.width);
+			line[2 * i + 1] = plot.y + plot.height - (int) Math.round((samples.values[k] - min) / range * plot.height);
+		}
+		gc.setClipping(plot);
+		gc.setForeground(Main.display.getSystemColor(SWT.COLOR_BLUE));
+		gc.setLineWidth(1);
+		if (points == 1)
+			gc.drawOval(line[0] - 2, line[1] - 2, 4, 4);
+		else
+			gc.drawPolyline(line);
+		gc.setClipping((Rectangle) null);
+	}
+
+	private String format(final double v)
+	{
+		final String s = Math.abs(v) >= 1000 || v == Math.rint(v) ? String.format("%.0f", v) : String.format("%.2f", v);
+		return unit.isEmpty() ? s : s + " " + unit;
+	}
+}
@@ -0,0 +1,348 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXAddress;
+
+/**
+ * Trigger-based capture of network monitor frames. The most recent frames are kept in a fixed-size ring in memory;
+ * when a trigger fires, the frames of the seconds before the trigger are written to a new capture file, followed by
+ * the frames of the seconds after it. A trigger firing during a capture extends the capture. Only the most recent
+ * capture files are kept, so memory and disk use stay bounded during long unattended runs.
+ * <p>
+ * The ring keeps references to the received frames and their timestamps in preallocated arrays, adding a frame
+ * allocates nothing. Frames are added by a single thread.
+ */
+final class TriggerCapture
+{
+	/** Maximum number of frames kept in memory before a trigger fires. */
+	static final int ringSize = 1 << 16;
+
+	/** Application layer services selectable as trigger. */
+	static final int[] services = { 0x000, 0x040, 0x080, 0x0c0, 0x100, 0x140, 0x200, 0x240, 0x280, 0x300, 0x340,
+		0x380, 0x3d5, 0x3d6, 0x3d7 };
+
+	private static final DateTimeFormatter fileTime = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss-SSS")
+			.withZone(ZoneId.systemDefault());
+
+	/**
+	 * Trigger condition evaluated for every frame.
+	 */
+	interface Trigger
+	{
+		/**
+		 * @param row decoded frame
+		 * @param time receive time in nanoseconds since the epoch
+		 * @return <code>true</code> if the trigger fires
+		 */
+		boolean test(MonitorRow row, long time);
+	}
+
+	/**
+	 * @param address individual or group address
+	 * @return trigger firing on frames with <code>address</code> as source or destination
+	 */
+	static Trigger address(final KNXAddress address)
+	{
+		final boolean group = address instanceof GroupAddress;
+		final int raw = address.getRawAddress();
+		final int dst = group ? 0x10000 | raw : raw;
+		return describe((row, time) -> row.destination() == dst || !group && row.source() == raw,
+				"address " + address);
+	}
+
+	/**
+	 * @param apci application layer service, see {@link #services}
+	 * @return trigger firing on frames of the service
+	 */
+	static Trigger service(final int apci)
+	{
+		return describe((row, time) -> row.apci() == apci, DataUnitBuilder.decodeAPCI(apci));
+	}
+
+	/**
+	 * Creates a trigger firing on frames whose decoded frame, TPCI / APCI, or ASDU column matches a regular
+	 * expression. Frames are formatted for this trigger, which allocates for every frame.
+	 *
+	 * @param regex regular expression
+	 * @return trigger
+	 */
+	static Trigger regex(final Pattern regex)
+	{
+		return describe((row, time) -> {
+			final String[] texts = row.texts();
+			for (int c = 5; c < texts.length; c++)
+				if (regex.matcher(texts[c]).find())
+					return true;
+			return false;
+		}, "regex " + regex.pattern());
+	}
+
+	/**
+	 * @param repeats number of repeated frames
+	 * @return trigger firing if at least <code>repeats</code> repeated frames are received within one second
+	 */
+	static Trigger repeatStorm(final int repeats)
+	{
+		// receive times of the last repeated frames, and the number of repeated frames recorded
+		final long[] times = new long[repeats];
+		final long[] count = new long[1];
+		return describe((row, time) -> {
+			if (!row.isRepetition())
+				return false;
+			final int i = (int) (count[0]++ % repeats);
+			final long oldest = times[i];
+			times[i] = time;
+			if (count[0] > repeats && time - oldest <= 1_000_000_000L) {
+				count[0] = 0;
+				return true;
+			}
+			return false;
+		}, repeats + " repeated frames per second");
+	}
+
+	private static Trigger describe(final Trigger trigger, final String description)
+	{
+		return new Trigger() {
+			@Override
+			public boolean test(final MonitorRow row, final long time)
+			{
+				return trigger.test(row, time);
+			}
+
+			@Override
+			public String toString()
+			{
+				return description;
+			}
+		};
+	}
+
+	private final Path dir;
+	private final int medium;
+	private final Trigger trigger;
+	private final long before;
+	private final long after;
+	private final int maxCaptures;
+	private final Consumer<String> log;
+
+	// ring of frames and their receive times in ns since the epoch
+	private final long[] times = new long[ringSize];
+	private final byte[][] frames = new byte[ringSize][];
+	private long end;
+
+	private CaptureWriter writer;
+	private long captureEnd;
+	private final Deque<Path> files = new ArrayDeque<>();
+	private int captures;
+	// set by quit, a receiver thread might still add a frame afterwards
+	private boolean closed;
+
+	/**
+	 * @param dir directory of the capture files
+	 * @param medium KNX medium of the frames
+	 * @param trigger trigger condition
+	 * @param before seconds captured before the trigger
+	 * @param after seconds captured after the trigger
+	 * @param maxCaptures number of capture files kept, older capture files of this trigger are deleted
+	 * @param log receives trigger and capture messages
+	 */
+	TriggerCapture(final Path dir, final int medium, final Trigger trigger, final int before, final int after,
+		final int maxCaptures, final Consumer<String> log)
+	{
+		this.dir = dir;
+		this.medium = medium;
+		this.trigger = trigger;
+		this.before = before * 1_000_000_000L;
+		this.after = after * 1_000_000_000L;
+		this.maxCaptures = maxCaptures;
+		this.log = log;
+	}
+
+	/**
+	 * Adds a received frame, evaluates the trigger, and writes the frame if a capture is running. Frames added after
+	 * {@link #quit()} are ignored.
+	 *
+	 * @param row decoded frame
+	 * @param frame cEMI frame, the ring keeps a reference
+	 */
+	synchronized void add(final MonitorRow row, final byte[] frame)
+	{
+		if (closed)
+			return;
+		final long now = CaptureWriter.timestamp();
+		final int i = (int) (end++ % ringSize);
+		times[i] = now;
+		frames[i] = frame;
+
+		final boolean fired = trigger.test(row, now);
+		if (writer == null) {
+			if (fired)
+				start(now);
+		}
+		else {
+			write(now, frame);
+			if (fired)
+				captureEnd = now + after;
+		}
+		if (writer != null && now >= captureEnd)
+			finish();
+	}
+
+	/**
+	 * Completes a running capture once the capture time after the trigger elapsed, for captures not completed by a
+	 * subsequent frame, and otherwise writes the frames buffered by a running capture. Invoked about once a second.
+	 */
+	synchronized void expire()
+	{
+		if (writer == null)
+			return;
+		if (CaptureWriter.timestamp() >= captureEnd) {
+			finish();
+			return;
+		}
+		try {
+			writer.flushIfDue();
+		}
+		catch (final IOException e) {
+			log.accept("writing trigger capture " + writer.file() + " failed: " + e.getMessage());
+			finish();
+		}
+	}
+
+	/**
+	 * Stops the trigger, completing a running capture.
+	 */
+	synchronized void quit()
+	{
+		closed = true;
+		if (writer != null)
+			finish();
+		end = 0;
+		Arrays.fill(frames, null);
+	}
+
+	/**
+	 * @return number of captures started
+	 */
+	synchronized int captures()
+	{
+		return captures;
+	}
+
+	@Override
+	public String toString()
+	{
+		return trigger.toString();
+	}
+
+	private void start(final long now)
+	{
+		if (closed)
+			return;
+		final Path file = dir.resolve("trigger-" + fileTime.format(Instant.ofEpochMilli(now / 1_000_000)) + ".kcap");
+		try {
+			writer = new CaptureWriter(file, medium);
+		}
+		catch (final IOException e) {
+			log.accept("trigger " + trigger + " fired, creating capture file failed: " + e.getMessage());
+			return;
+		}
+		captures++;
+		captureEnd = now + after;
+		log.accept("trigger " + trigger + " fired, capturing to " + file);
+
+		// frames of the ring received within the capture time before the trigger, including the triggering frame
+		long seq = Math.max(0, end - ringSize);
+		while (seq < end - 1 && times[(int) (seq % ringSize)] < now - before)
+			seq++;
+		for (; seq < end && writer != null; seq++) {
+			final int i = (int) (seq % ringSize);
+			write(times[i], frames[i]);
+		}
+	}
+
+	private void write(final long time, final byte[] frame)
+	{
+		try {
+			writer.write(CaptureWriter.cemiFrame, time, frame);
+		}
+		catch (final IOException e) {
+			log.accept("writing trigger capture " + writer.file() + " failed: " + e.getMessage());
+			finish();
+		}
+	}
+
+	private void finish()
+	{
+		final CaptureWriter w = writer;
+		writer = null;
+		try {
+			w.close();
+			log.accept("trigger capture " + w.file() + " completed, " + w.records() + " frames");
+		}
+		catch (final IOException e) {
+			log.accept("closing trigger capture " + w.file() + " failed: " + e.getMessage());
+		}
+		files.add(w.file());
+		while (files.size() > maxCaptures) {
+			final Path oldest = files.remove();
+			try {
+				Files.deleteIfExists(oldest);
+				log.accept("deleted trigger capture " + oldest + ", keeping the last " + maxCaptures);
+			}
+			catch (final IOException e) {
+				log.accept("deleting trigger capture " + oldest + " failed: " + e.getMessage());
+			}
+		}
+	}
+}
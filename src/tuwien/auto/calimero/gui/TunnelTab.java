@@ -36,12 +36,14 @@
 
 package tuwien.auto.calimero.gui;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 
 import org.eclipse.swt.SWT;
@@ -53,6 +55,8 @@ import org.eclipse.swt.graphics.FontMetrics;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.layout.FormAttachment;
 import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.layout.RowData;
 import org.eclipse.swt.layout.RowLayout;
 import org.eclipse.swt.widgets.Button;
@@ -62,13 +66,18 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Sash;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.Text;
 
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.KNXException;
 import tuwien.auto.calimero.KNXFormatException;
 import tuwien.auto.calimero.KNXIllegalArgumentException;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMILData;
 import tuwien.auto.calimero.datapoint.Datapoint;
 import tuwien.auto.calimero.datapoint.DatapointMap;
 import tuwien.auto.calimero.datapoint.StateDP;
@@ -76,11 +85,10 @@ import tuwien.auto.calimero.dptxlator.DPT;
 import tuwien.auto.calimero.dptxlator.TranslatorTypes;
 import tuwien.auto.calimero.dptxlator.TranslatorTypes.MainType;
 import tuwien.auto.calimero.gui.ConnectDialog.ConnectArguments;
+import tuwien.auto.calimero.process.ProcessCommunicator;
 import tuwien.auto.calimero.process.ProcessEvent;
 import tuwien.auto.calimero.tools.ProcComm;
 import tuwien.auto.calimero.xml.KNXMLException;
-import tuwien.auto.calimero.xml.XmlInputFactory;
-import tuwien.auto.calimero.xml.XmlReader;
 
 /**
  * @author B. Malinowsky
@@ -110,6 +118,11 @@ class TunnelTab extends BaseTabLayout
 			}
 		}
 
+		ProcessCommunicator communicator()
+		{
+			return pc;
+		}
+
 		void write(final Datapoint dp, final String value)
 		{
 			try {
@@ -118,43 +131,91 @@ class TunnelTab extends BaseTabLayout
 			catch (final KNXException e) {
 				asyncAddLog(e.getMessage());
 			}
+			catch (final KNXIllegalArgumentException e) {
+				asyncAddLog(e.getMessage());
+			}
 		}
 
 		@Override
 		protected void onGroupEvent(final ProcessEvent e)
 		{
+			if (capturing())
+				captureFrame(CaptureWriter.cemiFrame, ldataInd(e));
+			// the row keeps the event data, column text is formatted when the row is shown
 			final Datapoint dp = model.get(e.getDestination());
-			final String svc = e.getServiceCode() == 0x00 ? "read request"
-					: e.getServiceCode() == 0x40 ? "read response" : "write";
-			try {
-				final byte[] asdu = e.getASDU();
-				String value = "[empty]";
-				if (asdu.length > 0)
-					value = dp != null && dp.getDPT() != null ? asString(asdu, dp.getMainNumber(), dp.getDPT()) : "n/a";
-
-				final String now = new SimpleDateFormat("HH:mm:ss").format(Calendar.getInstance().getTime());
-				final String[] item = new String[] { "" + ++eventCounter, "" + eventCounterFiltered, now,
-					e.getSourceAddr().toString(), e.getDestination().toString(), svc,
-					DataUnitBuilder.toHex(asdu, " "), value };
-				if (applyFilter(item))
-					return;
-				// increment filtered counter after filter
-				++eventCounterFiltered;
-				asyncAddListItem(item, null, null);
-			}
-			catch (KNXException | KNXIllegalArgumentException e1) {
-				asyncAddLog("error: " + e1.getMessage());
+			final DptTranslator t = translators.get(dp);
+			final long now = System.currentTimeMillis();
+			final GroupRow row = new GroupRow(++eventCounter, now, e, t);
+			final GroupRow repeated = repeats.repeats(row, now);
+			if (repeated != null)
+				asyncUpdateListRow(repeated);
+			else
+				asyncAddListRow(row);
+			// read requests carry no value
+			if (e.getServiceCode() != 0x00) {
+				final int dst = e.getDestination().getRawAddress();
+				states.update(dst, e.getSourceAddr().getRawAddress(), row.asdu(), t, dp != null ? dp.getName() : null,
+						now);
+				final ValueHistory h = history;
+				if (h != null) {
+					try {
+						h.append(dst, now, row.asdu());
+					}
+					catch (final IOException ioe) {
+						asyncAddLog("group value history: " + ioe.getMessage());
+					}
+				}
 			}
 		}
 	}
 
+	// group events do not provide the received frame, we record an equivalent cEMI L-Data.ind instead
+	private static byte[] ldataInd(final ProcessEvent e)
+	{
+		final byte[] apdu = e.isLengthOptimizedAPDU()
+				? DataUnitBuilder.createLengthOptimizedAPDU(e.getServiceCode(), e.getASDU())
+				: DataUnitBuilder.createAPDU(e.getServiceCode(), e.getASDU());
+		return new CEMILData(CEMILData.MC_LDATA_IND, e.getSourceAddr(), e.getDestination(), apdu, Priority.LOW)
+				.toByteArray();
+	}
+
 	private Composite editArea;
 	private ProcCommWrapper pc;
+	private Button load;
+	private Text search;
 	private Combo points;
-	private DatapointMap<Datapoint> model = new DatapointMap<>();
+	private volatile DatapointMap<Datapoint> model = new DatapointMap<>();
+	// index of the datapoints in model, backing the datapoint picker
+	private DatapointIndex index = new DatapointIndex();
+	private DatapointImport loading;
+	private Button readAll;
+	private BulkRead bulkRead;
+	private Poller poller;
+	private Spinner writeRate;
+	private TelegramQueue writes;
+	private final DptTranslator.Cache translators = new DptTranslator.Cache();
+	private final GroupStates states = new GroupStates();
+	private final RepeatFilter repeats = new RepeatFilter();
+	private GroupStateView stateView;
+	private volatile ValueHistory history;
+	// incremented for each open and close of the history, used by the GUI thread only
+	private int historyGeneration;
+	private final List<TrendChart> charts = new ArrayList<>();
+
+	// maximum number of events kept in the event list
+	private static final int maxListItems = 1_000_000;
+	// maximum number of datapoints listed in the datapoint picker
+	private static final int maxPickerItems = 200;
+	// response timeout of a read request issued by read all [s]
+	private static final int defaultReadTimeout = 3;
+	// refresh interval of the write queue depth shown [ms]
+	private static final int writeQueueRefresh = 250;
+	// poll interval preset for a datapoint [s]
+	private static final int defaultPollInterval = 60;
+	// maximum number of unanswered or failed read requests of read all listed in the log
+	private static final int maxReportedFailures = 50;
 
 	private long eventCounter;
-	private long eventCounterFiltered = 1;
 	private final ConnectArguments connect;
 
 	TunnelTab(final CTabFolder tf, final ConnectArguments args)
@@ -164,6 +225,7 @@ class TunnelTab extends BaseTabLayout
 						+ (args.useNat() ? ", using NAT" : ""));
 		connect = args;
 
+		enableVirtualList(maxListItems, 1);
 		list.setLinesVisible(true);
 		final TableColumn cnt = new TableColumn(list, SWT.RIGHT);
 		cnt.setText("#");
@@ -189,6 +251,9 @@ class TunnelTab extends BaseTabLayout
 		final TableColumn decoded = new TableColumn(list, SWT.LEFT);
 		decoded.setText("Decoded ASDU");
 		decoded.setWidth(100);
+		final TableColumn repeated = new TableColumn(list, SWT.LEFT);
+		repeated.setText("Repeats");
+		repeated.setWidth(60);
 		enableColumnAdjusting();
 
 		final String filter = args.remote == null ? args.port : args.remote;
@@ -204,6 +269,49 @@ class TunnelTab extends BaseTabLayout
 	{
 		super.initWorkAreaTop();
 		addResetAndExport("_tunnel.csv");
+		addCaptureButton(() -> connect.knxMedium);
+
+		((GridLayout) top.getLayout()).numColumns++;
+		final Button showStates = new Button(top, SWT.NONE);
+		showStates.setFont(Main.font);
+		showStates.setText("Group states...");
+		showStates.setToolTipText("Show last value, source, and update rate of each group address");
+		showStates.addSelectionListener(selected(e -> {
+			if (stateView == null || stateView.isDisposed())
+				stateView = new GroupStateView(connect.name, states);
+			else
+				stateView.setActive();
+		}));
+
+		((GridLayout) top.getLayout()).numColumns += 2;
+		final Label collapse = new Label(top, SWT.NONE);
+		collapse.setFont(Main.font);
+		collapse.setText("Collapse repeats [s]:");
+		final Spinner repeatWindow = new Spinner(top, SWT.BORDER);
+		repeatWindow.setFont(Main.font);
+		repeatWindow.setValues(0, 0, 3600, 0, 1, 10);
+		repeatWindow.setToolTipText("Show telegrams with equal source, destination, service, and ASDU within this "
+				+ "time as one row with a repeat count, 0 shows every telegram");
+		repeatWindow.addModifyListener(e -> {
+			final long collapsed = repeats.collapsed();
+			final int window = repeatWindow.getSelection();
+			repeats.setWindow(window * 1000L);
+			asyncAddLog((window > 0 ? "collapse repeated telegrams within " + window + " s"
+					: "show every telegram") + " (" + collapsed + " repeats collapsed so far)");
+		});
+
+		((GridLayout) top.getLayout()).numColumns++;
+		final Button keepHistory = new Button(top, SWT.CHECK);
+		keepHistory.setFont(Main.font);
+		keepHistory.setText("Keep history");
+		final Path dir = historyDirectory();
+		keepHistory.setToolTipText("Store received group values in " + dir);
+		keepHistory.addSelectionListener(selected(e -> {
+			if (keepHistory.getSelection())
+				openHistory(dir, keepHistory);
+			else
+				closeHistory();
+		}));
 	}
 
 	@Override
@@ -222,7 +330,7 @@ class TunnelTab extends BaseTabLayout
 		row.center = true;
 		editArea.setLayout(row);
 
-		final Button load = new Button(editArea, SWT.NONE);
+		load = new Button(editArea, SWT.NONE);
 		load.setText("Load datapoints ...");
 		load.addSelectionListener(new SelectionAdapter() {
 			@Override
@@ -231,13 +339,82 @@ class TunnelTab extends BaseTabLayout
 				loadDatapoints();
 			}
 		});
+		search = new Text(editArea, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+		search.setMessage("Search datapoints");
+		search.setToolTipText("Group address prefix, or part of datapoint name or DPT");
+		setFieldSize(search, 15);
+		search.addModifyListener(e -> showMatches());
 		points = new Combo(editArea, SWT.DROP_DOWN);
 		setFieldSize(points, 30);
 
 		final Button read = new Button(editArea, SWT.NONE);
 		read.setText("Read");
+		readAll = new Button(editArea, SWT.NONE);
+		readAll.setText("Read all ...");
+		readAll.setToolTipText("Read all loaded datapoints");
+		readAll.addSelectionListener(selected(e -> readAllDatapoints()));
+		final Spinner pollInterval = new Spinner(editArea, SWT.BORDER);
+		pollInterval.setValues(defaultPollInterval, 0, 86_400, 0, 1, 60);
+		pollInterval.setToolTipText("Poll interval of the selected datapoint [s], 0 stops polling");
+		final Button poll = new Button(editArea, SWT.NONE);
+		poll.setText("Poll");
+		poll.setToolTipText("Read the selected datapoint periodically");
+		poll.addSelectionListener(selected(e -> {
+			try {
+				final GroupAddress main = selectedDpAddress();
+				final Datapoint dp = model.get(main);
+				if (dp == null) {
+					asyncAddLog("datapoint " + points.getText() + " not loaded");
+					return;
+				}
+				if (poller == null) {
+					poller = new Poller(pc.communicator(), states::lastUpdate, Poller.defaultMaxRate,
+							this::asyncAddLog);
+					poller.suspend(bulkRead != null);
+				}
+				final int interval = pollInterval.getSelection();
+				poller.poll(dp, interval);
+				asyncAddLog((interval > 0 ? "poll " + main + " every " + interval + " s" : "stop polling " + main)
+						+ " (" + poller.size() + " datapoints polled, " + poller.reads() + " reads so far, "
+						+ poller.skipped() + " skipped for a fresh value)");
+				poll.setToolTipText("Read the selected datapoint periodically, " + poller.size()
+						+ " datapoints polled");
+			}
+			catch (final KNXFormatException e1) {
+				asyncAddLog(e1.getMessage());
+			}
+		}));
+		final Button chart = new Button(editArea, SWT.NONE);
+		chart.setText("Chart");
+		chart.setToolTipText("Plot the stored values of the selected datapoint over time");
+		chart.addSelectionListener(selected(e -> {
+			try {
+				final GroupAddress main = selectedDpAddress();
+				final Datapoint dp = model.get(main);
+				final DptTranslator t = translators.get(dp);
+				if (t == null) {
+					asyncAddLog("datapoint " + points.getText() + " not loaded or without datapoint type");
+					return;
+				}
+				if (history == null)
+					asyncAddLog("enable \"Keep history\" to store the values of " + main);
+				charts.removeIf(TrendChart::isDisposed);
+				charts.add(new TrendChart(main + " " + dp.getName(), () -> history, main.getRawAddress(), t,
+						t.unit()));
+			}
+			catch (final KNXFormatException e1) {
+				asyncAddLog(e1.getMessage());
+			}
+		}));
 		final Button write = new Button(editArea, SWT.NONE);
 		write.setText("Write");
+		writeRate = new Spinner(editArea, SWT.BORDER);
+		writeRate.setValues(TelegramQueue.defaultRate, 1, 50, 0, 1, 5);
+		writeRate.setToolTipText("Maximum group write telegrams per second");
+		writeRate.addModifyListener(e -> {
+			if (writes != null)
+				writes.setRate(writeRate.getSelection());
+		});
 		final Combo value = new Combo(editArea, SWT.DROP_DOWN);
 		setFieldSize(value, 15);
 		final Label unit = new Label(editArea, SWT.NONE);
@@ -286,7 +463,6 @@ class TunnelTab extends BaseTabLayout
 					if (!model.contains(main)) {
 						final StateDP dp = new StateDP(main, "-");
 						model.add(dp);
-						points.add(main.toString());
 						if (!selected.isEmpty()) {
 							final Object[] data = (Object[]) dpt.getData(selected);
 							final MainType mt = (MainType) data[0];
@@ -294,11 +470,17 @@ class TunnelTab extends BaseTabLayout
 							dp.setDPT(mt.getMainNumber(), dpt != null ? dpt.getID()
 									: mt.getSubTypes().entrySet().iterator().next().getValue().getID());
 						}
+						index.add(dp);
+						showMatches();
 					}
 					else if (!selected.isEmpty()) {
 						updateToSelectedDpt(main, (Object[]) dpt.getData(selected));
 					}
-					pc.read(model.get(main));
+					// the response timeout of a running read all applies to every read
+					if (bulkRead != null)
+						asyncAddLog("read " + main + " not sent, wait for read all to complete");
+					else
+						pc.read(model.get(main));
 				}
 				catch (final KNXException e1) {
 					asyncAddLog(e1.getMessage());
@@ -315,7 +497,8 @@ class TunnelTab extends BaseTabLayout
 					final String selected = dpt.getText();
 					if (dp != null && !selected.isEmpty()) {
 						updateToSelectedDpt(dp.getMainAddress(), (Object[]) dpt.getData(selected));
-						pc.write(dp, value.getText());
+						writeQueue().write(dp, value.getText());
+						showWriteQueue(write);
 					}
 					else
 						asyncAddLog("datapoint " + points.getText() + " not loaded");
@@ -331,6 +514,8 @@ class TunnelTab extends BaseTabLayout
 			{
 				try {
 					points.setToolTipText(points.getText());
+					final int polled = poller != null ? poller.interval(selectedDpAddress().getRawAddress()) : 0;
+					pollInterval.setSelection(polled > 0 ? polled : defaultPollInterval);
 					value.removeAll();
 					dpt.select(0);
 					final Datapoint dp = model.get(selectedDpAddress());
@@ -373,9 +558,19 @@ class TunnelTab extends BaseTabLayout
 	{
 		if (pc != null)
 			pc.quit();
+		if (stateView != null)
+			stateView.close();
+		if (bulkRead != null)
+			bulkRead.cancel();
+		if (poller != null)
+			poller.quit();
+		if (writes != null)
+			writes.quit();
+		charts.forEach(TrendChart::close);
+		closeHistory();
 	}
 
-	private static void setFieldSize(final Combo field, final int columns)
+	private static void setFieldSize(final Control field, final int columns)
 	{
 		final GC gc = new GC(field);
 		final FontMetrics fm = gc.getFontMetrics();
@@ -425,26 +620,261 @@ class TunnelTab extends BaseTabLayout
 
 	private void loadDatapoints()
 	{
-		final String systemID = new FileDialog(Main.shell, SWT.OPEN).open();
-		if (systemID == null)
+		if (loading != null) {
+			loading.cancel();
 			return;
-		model = new DatapointMap<>();
-		try (final XmlReader r = XmlInputFactory.newInstance().createXMLReader(systemID)) {
-			model.load(r);
-			asyncAddLog("datapoints loaded from " + systemID);
 		}
-		catch (final KNXMLException e) {
-			asyncAddLog("failed to load datapoints from " + systemID + ", " + e.getMessage() + ", line "
-					+ e.getLineNumber() + ", item " + e.getBadItem());
+		final FileDialog dlg = new FileDialog(Main.shell, SWT.OPEN);
+		dlg.setText("Load datapoints");
+		dlg.setFilterExtensions(new String[] { "*.xml;*" + KnxProject.extension, "*.xml", "*" + KnxProject.extension,
+			"*.*" });
+		dlg.setFilterNames(new String[] { "Datapoints and ETS projects", "Calimero datapoints (*.xml)",
+			"ETS projects (*" + KnxProject.extension + ")", "All files" });
+		final String systemID = dlg.open();
+		if (systemID == null)
+			return;
+		final DatapointImport dpImport = new DatapointImport(Paths.get(systemID));
+		loading = dpImport;
+		setButtonText(load, "Cancel loading");
+		final Thread t = new Thread(() -> {
+			final long start = System.nanoTime();
+			DatapointIndex loaded = null;
+			try {
+				loaded = dpImport.run((percent, datapoints) -> Main.asyncExec(() -> {
+					if (loading == dpImport)
+						setButtonText(load, "Cancel loading (" + percent + "%)");
+				}));
+			}
+			catch (final KNXMLException e) {
+				asyncAddLog("failed to load datapoints from " + systemID + ", " + e.getMessage() + ", line "
+						+ e.getLineNumber() + ", item " + e.getBadItem());
+			}
+			catch (final IOException e) {
+				asyncAddLog("failed to load datapoints from " + systemID + ", " + e.getMessage());
+			}
+			final long ms = (System.nanoTime() - start) / 1_000_000;
+			final DatapointIndex result = loaded;
+			Main.asyncExec(() -> datapointsLoaded(dpImport, result, ms));
+		}, "Load datapoints");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	// this method must be invoked from the GUI thread only
+	private void datapointsLoaded(final DatapointImport dpImport, final DatapointIndex loaded, final long ms)
+	{
+		loading = null;
+		if (editArea.isDisposed())
+			return;
+		setButtonText(load, "Load datapoints ...");
+		if (loaded == null) {
+			if (dpImport.isCanceled())
+				asyncAddLog("loading datapoints from " + dpImport.file() + " canceled");
+			return;
 		}
-		points.removeAll();
+		model = dpImport.model();
+		index = loaded;
+		points.setText("");
 		points.setToolTipText("");
+		showMatches();
+		final int duplicates = dpImport.duplicates();
+		asyncAddLog("loaded " + loaded.size() + " datapoints from " + dpImport.file() + " in " + ms + " ms"
+				+ (duplicates > 0 ? ", skipped " + duplicates + " datapoints with group address already used" : ""));
+	}
+
+	private void setButtonText(final Button button, final String text)
+	{
+		if (button.isDisposed())
+			return;
+		button.setText(text);
+		editArea.layout();
+	}
+
+	// group value history of a connection, stored in the user's home directory
+	private Path historyDirectory()
+	{
+		final String name = connect.name.replaceAll("[^A-Za-z0-9._-]", "_");
+		return Paths.get(System.getProperty("user.home"), ".calimero-gui", "history", name);
+	}
 
-		final TreeSet<Datapoint> set = new TreeSet<>(
-				(dp1, dp2) -> dp1.getMainAddress().getRawAddress() - dp2.getMainAddress().getRawAddress());
-		set.addAll(model.getDatapoints());
-		for (final Datapoint dp : set)
-			points.add(dp.getMainAddress().toString() + "\t" + dp.getName());
+	// the history is opened by a worker, on failure the keep history button is deselected
+	private void openHistory(final Path dir, final Button keepHistory)
+	{
+		final int generation = ++historyGeneration;
+		final Thread t = new Thread(() -> {
+			final ValueHistory h;
+			final long start = System.nanoTime();
+			try {
+				h = ValueHistory.open(dir);
+			}
+			catch (final IOException e) {
+				asyncAddLog("opening group value history in " + dir + " failed: " + e.getMessage());
+				Main.asyncExec(() -> {
+					if (generation == historyGeneration && !keepHistory.isDisposed())
+						keepHistory.setSelection(false);
+				});
+				return;
+			}
+			final long ms = (System.nanoTime() - start) / 1_000_000;
+			Main.asyncExec(() -> {
+				// history was closed or opened again meanwhile
+				if (generation != historyGeneration) {
+					close(h);
+					return;
+				}
+				history = h;
+				asyncAddLog("keep group value history in " + dir + " (opened in " + ms + " ms)");
+			});
+		}, "Open history " + dir.getFileName());
+		t.setDaemon(true);
+		t.start();
+	}
+
+	// this method must be invoked from the GUI thread only
+	private void closeHistory()
+	{
+		historyGeneration++;
+		final ValueHistory h = history;
+		history = null;
+		if (h != null)
+			close(h);
+	}
+
+	private void close(final ValueHistory h)
+	{
+		try {
+			h.close();
+		}
+		catch (final IOException e) {
+			asyncAddLog("closing group value history: " + e.getMessage());
+		}
+	}
+
+	private TelegramQueue writeQueue()
+	{
+		if (writes == null)
+			writes = new TelegramQueue(pc::write, writeRate.getSelection(), this::asyncAddLog);
+		return writes;
+	}
+
+	// shows the number of queued writes on the write button while the queue is not empty
+	private void showWriteQueue(final Button write)
+	{
+		if (write.isDisposed())
+			return;
+		final int depth = writes.depth();
+		setButtonText(write, depth > 0 ? "Write (" + depth + " queued)" : "Write");
+		write.setToolTipText("Sent " + writes.sent() + " writes, " + writes.coalesced()
+				+ " replaced by a later value, maximum queue depth " + writes.maxDepth());
+		if (depth > 0)
+			Main.display.timerExec(writeQueueRefresh, () -> showWriteQueue(write));
+	}
+
+	private void readAllDatapoints()
+	{
+		if (bulkRead != null) {
+			bulkRead.cancel();
+			return;
+		}
+		if (index.size() == 0) {
+			asyncAddLog("no datapoints loaded");
+			return;
+		}
+		final Shell shell = new Shell(Main.shell, SWT.DIALOG_TRIM | SWT.APPLICATION_MODAL);
+		shell.setText("Read all datapoints");
+		shell.setLayout(new GridLayout(2, false));
+		new Label(shell, SWT.NONE).setText("Outstanding read requests:");
+		final Spinner window = new Spinner(shell, SWT.BORDER);
+		window.setValues(BulkRead.defaultWindow, 1, BulkRead.maxWindow, 0, 1, 4);
+		new Label(shell, SWT.NONE).setText("Response timeout [s]:");
+		final Spinner timeout = new Spinner(shell, SWT.BORDER);
+		timeout.setValues(defaultReadTimeout, 1, 60, 0, 1, 5);
+		final Button start = new Button(shell, SWT.PUSH);
+		start.setText("Read " + index.size() + " datapoints");
+		start.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 2, 1));
+		shell.setDefaultButton(start);
+		start.addSelectionListener(selected(e -> {
+			final int w = window.getSelection();
+			final int t = timeout.getSelection();
+			shell.dispose();
+			startBulkRead(w, t);
+		}));
+		shell.pack();
+		shell.setLocation(Main.shell.getLocation().x + 100, Main.shell.getLocation().y + 100);
+		shell.open();
+	}
+
+	private void startBulkRead(final int window, final int timeout)
+	{
+		final DatapointMap<Datapoint> m = model;
+		final java.util.List<Datapoint> datapoints = new ArrayList<>(index.size());
+		for (int i = 0; i < index.size(); i++) {
+			final Datapoint dp = m.get(new GroupAddress(index.address(i)));
+			if (dp != null)
+				datapoints.add(dp);
+		}
+		asyncAddLog("read " + datapoints.size() + " datapoints, " + window + " outstanding requests, response timeout "
+				+ timeout + " s");
+		final BulkRead br = new BulkRead(pc.communicator(), datapoints, window, timeout);
+		bulkRead = br;
+		// polling resumes once the bulk read completed and restored the response timeout
+		if (poller != null)
+			poller.suspend(true);
+		setButtonText(readAll, "Cancel read all");
+		br.start(new BulkRead.Listener() {
+			@Override
+			public void progress(final int done, final int total)
+			{
+				if (done % 10 == 0 || done == total)
+					Main.asyncExec(() -> {
+						if (bulkRead == br)
+							setButtonText(readAll, "Cancel read all (" + done + "/" + total + ")");
+					});
+			}
+
+			@Override
+			public void completed(final BulkRead read)
+			{
+				Main.asyncExec(() -> bulkReadCompleted(read));
+			}
+		});
+	}
+
+	// this method must be invoked from the GUI thread only
+	private void bulkReadCompleted(final BulkRead read)
+	{
+		bulkRead = null;
+		if (poller != null)
+			poller.suspend(false);
+		setButtonText(readAll, "Read all ...");
+		final java.util.List<GroupAddress> timeouts = read.timeouts();
+		final java.util.List<String> errors = read.errors();
+		asyncAddLog((read.isCanceled() ? "read all canceled: " : "read all completed: ") + read.done() + " of "
+				+ read.total() + " datapoints in " + read.duration() + " ms, " + read.responses() + " responses, "
+				+ timeouts.size() + " timeouts, " + errors.size() + " errors");
+		if (!timeouts.isEmpty()) {
+			final int shown = Math.min(timeouts.size(), maxReportedFailures);
+			asyncAddLog("no response from " + timeouts.subList(0, shown).stream().map(GroupAddress::toString)
+					.collect(Collectors.joining(", ")) + (shown < timeouts.size() ? ", ..." : ""));
+		}
+		errors.stream().limit(maxReportedFailures).forEach(this::asyncAddLog);
+	}
+
+	// lists the datapoints matching the search text in the datapoint picker
+	private void showMatches()
+	{
+		final String query = search.getText();
+		final int[] matches = index.search(query, maxPickerItems);
+		final String[] items = new String[matches.length];
+		for (int i = 0; i < matches.length; i++)
+			items[i] = index.label(matches[i]);
+		final String text = points.getText();
+		points.setItems(items);
+		points.setText(text);
+		final int total = matches.length < maxPickerItems ? matches.length : index.count(query);
+		search.setToolTipText(total > matches.length
+				? "Showing " + matches.length + " of " + total + " matching datapoints, refine the search"
+				: total + " of " + index.size() + " datapoints match");
 	}
 
 	private void updateToSelectedDpt(final GroupAddress main, final Object[] data) throws KNXException
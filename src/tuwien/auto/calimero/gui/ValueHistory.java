@@ -0,0 +1,456 @@
+/*
+    Calimero GUI - A graphical user interface for the Calimero 2 tools
+    Copyright (c) 2017 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+    Linking this library statically or dynamically with other modules is
+    making a combined work based on this library. Thus, the terms and
+    conditions of the GNU General Public License cover the whole
+    combination.
+
+    As a special exception, the copyright holders of this library give you
+    permission to link this library with independent modules to produce an
+    executable, regardless of the license terms of these independent
+    modules, and to copy and distribute the resulting executable under terms
+    of your choice, provided that you also meet, for each linked independent
+    module, the terms and conditions of the license of that module. An
+    independent module is a module which is not derived from or based on
+    this library. If you modify this library, you may extend this exception
+    to your version of the library, but you are not obligated to do so. If
+    you do not wish to do so, delete this exception statement from your
+    version.
+*/
+
+
+package tuwien.auto.calimero.gui;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only store of group values over time, kept in memory-mapped segment files of a directory. Each segment
+ * starts with a header, followed by value records:
+ *
+ * <pre>
+ * header: magic "KTSD" (4) | version (4) | base time in ms since the epoch (8) | end of records (4) | reserved (4)
+ *         | time of last record (8)
+ * record: group address (2) | ASDU length (1) | offset of the next record of the group address, 0 if none (4)
+ *         | time delta in ms (varint) | ASDU
+ * </pre>
+ *
+ * The records of a group address form a forward chain within a segment, the offset of the next record is patched in
+ * place on appending; the time delta is relative to the previous record of the same group address, or to the segment
+ * base time for the first one. For every group address of a segment, a sparse index of every 32nd record is kept in
+ * memory, so a query seeks close to its start time and then only visits records of the queried group address.
+ * The indexes are rebuilt by scanning the segments on opening the store. A store holds an exclusive lock on its
+ * directory until it is closed, so only one store at a time appends to the segments. This class is thread-safe.
+ */
+final class ValueHistory implements AutoCloseable
+{
+	interface Visitor
+	{
+		/**
+		 * @param time time of the value in ms since the epoch
+		 * @param asdu the value, the array is reused after returning from this method
+		 */
+		void value(long time, byte[] asdu);
+	}
+
+	private static final int magic = 0x4B545344; // "KTSD"
+	private static final int version = 1;
+	private static final int headerSize = 32;
+	private static final int segmentSize = 16 * 1024 * 1024;
+	// record header without time delta
+	private static final int recordHeaderSize = 7;
+	private static final int maxVarintSize = 10;
+	// records of a group address between two sparse index entries
+	private static final int indexInterval = 32;
+
+	private static final String prefix = "segment-";
+	private static final String suffix = ".kts";
+	private static final String lockFile = "lock";
+
+	// records of one group address within a segment
+	private static final class Chain
+	{
+		int first;
+		int last;
+		long firstTime;
+		long lastTime;
+		int count;
+		// sparse index, time and offset of every indexInterval-th record
+		long[] times = new long[4];
+		int[] offsets = new int[4];
+		int samples;
+
+		void add(final int offset, final long time)
+		{
+			if (count == 0) {
+				first = offset;
+				firstTime = time;
+			}
+			if (count % indexInterval == 0) {
+				if (samples == times.length) {
+					times = Arrays.copyOf(times, 2 * samples);
+					offsets = Arrays.copyOf(offsets, 2 * samples);
+				}
+				times[samples] = time;
+				offsets[samples++] = offset;
+			}
+			last = offset;
+			lastTime = time;
+			count++;
+		}
+	}
+
+	private static final class Segment
+	{
+		final Path file;
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+		final long base;
+		int end;
+		long lastTime;
+		final Map<Integer, Chain> chains = new HashMap<>();
+
+		// creates a new segment
+		Segment(final Path file, final long base) throws IOException
+		{
+			this.file = file;
+			this.base = base;
+			channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+			buffer.putInt(0, magic);
+			buffer.putInt(4, version);
+			buffer.putLong(8, base);
+			end = headerSize;
+			lastTime = base;
+			buffer.putInt(16, end);
+			buffer.putLong(24, lastTime);
+		}
+
+		// opens an existing segment and rebuilds its index
+		Segment(final Path file) throws IOException
+		{
+			this.file = file;
+			channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			if (channel.size() != segmentSize) {
+				channel.close();
+				throw new IOException(file + ": invalid segment size " + channel.size());
+			}
+			buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+			if (buffer.getInt(0) != magic || buffer.getInt(4) != version) {
+				channel.close();
+				throw new IOException(file + ": no value history segment");
+			}
+			base = buffer.getLong(8);
+			end = buffer.getInt(16);
+			lastTime = buffer.getLong(24);
+			int offset = headerSize;
+			while (offset < end) {
+				final int address = buffer.getShort(offset) & 0xffff;
+				final int length = buffer.get(offset + 2) & 0xff;
+				final Chain c = chains.get(address);
+				final long time = (c == null ? base : c.lastTime) + readVarint(buffer, offset + recordHeaderSize);
+				chain(address).add(offset, time);
+				offset = varintEnd(buffer, offset + recordHeaderSize) + length;
+			}
+		}
+
+		Chain chain(final int address)
+		{
+			return chains.computeIfAbsent(address, a -> new Chain());
+		}
+
+		// returns false if the record does not fit into this segment
+		boolean append(final Chain c, final int address, final long time, final byte[] asdu)
+		{
+			if (end + recordHeaderSize + maxVarintSize + asdu.length > segmentSize)
+				return false;
+			final int offset = end;
+			buffer.putShort(offset, (short) address);
+			buffer.put(offset + 2, (byte) asdu.length);
+			buffer.putInt(offset + 3, 0);
+			final int data = writeVarint(buffer, offset + recordHeaderSize, time - (c.count == 0 ? base : c.lastTime));
+			for (int i = 0; i < asdu.length; i++)
+				buffer.put(data + i, asdu[i]);
+			if (c.count > 0)
+				buffer.putInt(c.last + 3, offset);
+			c.add(offset, time);
+			end = data + asdu.length;
+			lastTime = Math.max(lastTime, time);
+			buffer.putInt(16, end);
+			buffer.putLong(24, lastTime);
+			return true;
+		}
+
+		int query(final int address, final long from, final long to, final Visitor visitor, final byte[][] buffers)
+		{
+			final Chain c = chains.get(address);
+			if (c == null || c.lastTime < from || c.firstTime > to)
+				return 0;
+			// start at the last sparse index entry before the start time
+			int low = 0;
+			int high = c.samples;
+			while (low < high) {
+				final int mid = (low + high) >>> 1;
+				if (c.times[mid] < from)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			final int i = Math.max(0, low - 1);
+			int offset = c.offsets[i];
+			long time = c.times[i];
+			int n = 0;
+			while (time <= to) {
+				final int length = buffer.get(offset + 2) & 0xff;
+				if (time >= from) {
+					final int data = varintEnd(buffer, offset + recordHeaderSize);
+					if (buffers[length] == null)
+						buffers[length] = new byte[length];
+					final byte[] asdu = buffers[length];
+					for (int k = 0; k < length; k++)
+						asdu[k] = buffer.get(data + k);
+					visitor.value(time, asdu);
+					n++;
+				}
+				final int next = buffer.getInt(offset + 3);
+				if (next == 0)
+					break;
+				offset = next;
+				time += readVarint(buffer, offset + recordHeaderSize);
+			}
+			return n;
+		}
+
+		void close() throws IOException
+		{
+			buffer.force();
+			channel.close();
+		}
+	}
+
+	private final Path dir;
+	// holds the directory lock until closed
+	private final FileChannel lockChannel;
+	// segments in order of base time, the last one is appended to
+	private final List<Segment> segments = new ArrayList<>();
+	// chains of the last segment by group address, for appending without lookup
+	private Chain[] active = new Chain[0x10000];
+	private boolean closed;
+
+	/**
+	 * Opens the value history of a directory, creating the directory if necessary.
+	 *
+	 * @param dir directory of the segment files
+	 * @return the value history
+	 * @throws IOException on error opening a segment, or if the directory is locked by another value history
+	 */
+	static ValueHistory open(final Path dir) throws IOException
+	{
+		return new ValueHistory(dir);
+	}
+
+	private ValueHistory(final Path dir) throws IOException
+	{
+		this.dir = dir;
+		Files.createDirectories(dir);
+		lockChannel = FileChannel.open(dir.resolve(lockFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		FileLock lock;
+		try {
+			lock = lockChannel.tryLock();
+		}
+		catch (final OverlappingFileLockException e) {
+			// locked by a value history of this VM
+			lock = null;
+		}
+		catch (final IOException e) {
+			lockChannel.close();
+			throw e;
+		}
+		if (lock == null) {
+			lockChannel.close();
+			throw new IOException("directory is in use by another group value history");
+		}
+		final List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+			ds.forEach(files::add);
+		}
+		files.sort(null);
+		try {
+			for (final Path file : files)
+				segments.add(new Segment(file));
+		}
+		catch (final IOException e) {
+			close();
+			throw e;
+		}
+		if (!segments.isEmpty()) {
+			final Segment last = segments.get(segments.size() - 1);
+			last.chains.forEach((address, c) -> active[address] = c);
+		}
+	}
+
+	Path directory()
+	{
+		return dir;
+	}
+
+	/**
+	 * Appends a group value. Times of one group address are expected in ascending order, an earlier time is
+	 * recorded as the time of the previous value. Values appended after closing the history are ignored.
+	 *
+	 * @param address raw group address
+	 * @param time time of the value in ms since the epoch
+	 * @param asdu the value, at most 255 bytes
+	 * @throws IOException on error creating a new segment
+	 */
+	synchronized void append(final int address, final long time, final byte[] asdu) throws IOException
+	{
+		if (closed)
+			return;
+		if (segments.isEmpty())
+			newSegment(time);
+		Segment s = segments.get(segments.size() - 1);
+		Chain c = active[address];
+		if (c == null)
+			c = active[address] = s.chain(address);
+		final long t = c.count > 0 ? Math.max(time, c.lastTime) : Math.max(time, s.base);
+		if (!s.append(c, address, t, asdu)) {
+			s = newSegment(t);
+			c = active[address] = s.chain(address);
+			s.append(c, address, t, asdu);
+		}
+	}
+
+	/**
+	 * Visits the values of a group address within a time range, in order of time. A closed history visits no values.
+	 *
+	 * @param address raw group address
+	 * @param from start time in ms since the epoch (inclusive)
+	 * @param to end time in ms since the epoch (inclusive)
+	 * @param visitor receives the values
+	 * @return number of visited values
+	 */
+	synchronized int query(final int address, final long from, final long to, final Visitor visitor)
+	{
+		if (closed)
+			return 0;
+		// ASDU arrays by length, reused for all visited values
+		final byte[][] buffers = new byte[256][];
+		int n = 0;
+		for (final Segment s : segments) {
+			if (s.base <= to && s.lastTime >= from)
+				n += s.query(address, from, to, visitor, buffers);
+		}
+		return n;
+	}
+
+	/**
+	 * @param address raw group address
+	 * @return time of the first value of the group address in ms since the epoch, or -1 if there is none
+	 */
+	synchronized long firstTime(final int address)
+	{
+		for (final Segment s : segments) {
+			final Chain c = s.chains.get(address);
+			if (c != null)
+				return c.firstTime;
+		}
+		return -1;
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		closed = true;
+		IOException thrown = null;
+		for (final Segment s : segments) {
+			try {
+				s.close();
+			}
+			catch (final IOException e) {
+				thrown = e;
+			}
+		}
+		segments.clear();
+		active = new Chain[0x10000];
+		try {
+			// closing the channel releases the lock
+			lockChannel.close();
+		}
+		catch (final IOException e) {
+			thrown = e;
+		}
+		if (thrown != null)
+			throw thrown;
+	}
+
+	private Segment newSegment(final long base) throws IOException
+	{
+		final Segment s = new Segment(dir.resolve(String.format("%s%016x%s", prefix, base, suffix)), base);
+		segments.add(s);
+		Arrays.fill(active, null);
+		return s;
+	}
+
+	private static long readVarint(final MappedByteBuffer buffer, final int offset)
+	{
+		long v = 0;
+		for (int i = offset, shift = 0;; i++, shift += 7) {
+			final int b = buffer.get(i);
+			v |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+	}
+
+	private static int varintEnd(final MappedByteBuffer buffer, final int offset)
+	{
+		int i = offset;
+		while ((buffer.get(i) & 0x80) != 0)
+			i++;
+		return i + 1;
+	}
+
+	// returns the offset following the written varint
+	private static int writeVarint(final MappedByteBuffer buffer, final int offset, final long value)
+	{
+		long v = value;
+		int i = offset;
+		while ((v & ~0x7fL) != 0) {
+			buffer.put(i++, (byte) (v & 0x7f | 0x80));
+			v >>>= 7;
+		}
+		buffer.put(i++, (byte) v);
+		return i;
+	}
+}